@@ -18,34 +18,36 @@
 # under the License.
 #
 
-import sys, getopt, time, logging
-from kazoo.client import KazooClient
+import sys, getopt, time, logging, threading
+from kazoo.client import KazooClient, KazooState
 from kazoo.exceptions import NodeExistsError
-from kazoo.retry import KazooRetry
+from kazoo.retry import KazooRetry, RetryFailedError
 
 logging.getLogger('kazoo.client').addHandler(logging.StreamHandler())
 
 def usage():
     sys.stderr.write('''
-%s -z <zookeeper> -p <path> [-w|-c|-e]
+%s -z <zookeeper> -p <path> [-p <path> ...] [-t <timeout>] [-w|-c|-e]
 
-Wait for, or create znode
+Wait for, or create znodes
   -z Specify zookeeper connect string
-  -p Znode path to watch or create
-  -w Watch for path creation
-  -c Create path
-  -e Check if znode exists
+  -p Znode path to watch or create, can be repeated
+  -t Timeout in seconds, no timeout by default
+  -w Watch for paths creation
+  -c Create paths
+  -e Check if znodes exist
 ''' % (sys.argv[0]))
 
 try:
-    opts, args = getopt.getopt(sys.argv[1:], "z:p:cweh")
+    opts, args = getopt.getopt(sys.argv[1:], "z:p:t:cweh")
 except getopt.GetoptError as err:
     sys.stderr.write(str(err) + '\n')
     usage()
     sys.exit(2)
 
 zookeeper = None
-znode = None
+znodes = []
+timeout = None
 create = False
 watch = False
 exists = False
@@ -57,7 +59,9 @@ for o, a in opts:
     elif o in ("-z"):
         zookeeper = a
     elif o in ("-p"):
-        znode = a
+        znodes.append(a)
+    elif o in ("-t"):
+        timeout = float(a)
     elif o in ("-w"):
         watch = True
     elif o in ("-c"):
@@ -74,7 +78,7 @@ if not zookeeper:
     usage()
     sys.exit(3)
 
-if not znode:
+if not znodes:
     sys.stderr.write("Znode must be specified\n")
     usage()
     sys.exit(4)
@@ -84,26 +88,77 @@ if (not watch and not create and not exists):
     usage()
     sys.exit(5)
 
-while True:
-    zk = KazooClient(hosts=zookeeper, timeout=1, connection_retry=KazooRetry(max_tries=-1))
+deadline = None if timeout is None else time.time() + timeout
+
+def remaining():
+    if deadline is None:
+        return None
+    return max(deadline - time.time(), 0)
+
+def timed_out(message):
+    sys.stderr.write("Timed out after %s seconds %s\n" % (timeout, message))
+    sys.exit(6)
+
+def retry(func, *args, **kwargs):
+    # retry on connection loss, but not past the deadline
+    if deadline is None:
+        return zk.retry(func, *args, **kwargs)
     try:
-        zk.start()
-        if create:
+        return KazooRetry(max_tries=-1, deadline=remaining())(func, *args, **kwargs)
+    except RetryFailedError:
+        timed_out("retrying %s" % func.__name__)
+
+# Set whenever a watched znode changes or the connection is re-established,
+# so the waiter re-checks its znode and re-arms the watch
+changed = threading.Event()
+
+def on_state_change(state):
+    if state == KazooState.CONNECTED:
+        changed.set()
+
+def on_znode_event(event):
+    changed.set()
+
+def wait_for(zk, znode):
+    waiting = False
+    while True:
+        changed.clear()
+        if retry(zk.exists, znode, watch=on_znode_event):
+            return
+        if not waiting:
+            print("Waiting for %s" % znode)
+            waiting = True
+        if not changed.wait(remaining()):
+            timed_out("waiting for %s" % znode)
+
+# A single session is used for all the znodes, the client reconnects by itself on connection loss
+zk = KazooClient(hosts=zookeeper,
+                 connection_retry=KazooRetry(max_tries=-1),
+                 command_retry=KazooRetry(max_tries=-1))
+zk.add_listener(on_state_change)
+try:
+    zk.start(timeout=remaining())
+except zk.handler.timeout_exception:
+    # the client is already stopped when it fails to connect
+    timed_out("connecting to %s" % zookeeper)
+
+try:
+    if create:
+        for znode in znodes:
             try:
-                zk.create(znode)
+                retry(zk.create, znode)
             except NodeExistsError:
                 pass
-            sys.exit(0)
-        elif watch:
-            while not zk.exists(znode):
-                print("Waiting for %s" % znode)
-                time.sleep(1)
-            sys.exit(0)
-        elif exists:
-            if zk.exists(znode):
-                sys.exit(0)
-            else:
+        sys.exit(0)
+    elif watch:
+        for znode in znodes:
+            wait_for(zk, znode)
+        sys.exit(0)
+    elif exists:
+        for znode in znodes:
+            if not retry(zk.exists, znode):
                 sys.exit(-1)
-    finally:
-        zk.stop()
-        zk.close()
+        sys.exit(0)
+finally:
+    zk.stop()
+    zk.close()
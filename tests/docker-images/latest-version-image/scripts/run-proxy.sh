@@ -28,4 +28,6 @@ if [ -z "$NO_AUTOSTART" ]; then
 fi
 
 bin/watch-znode.py -z $zookeeperServers -p /initialized-$clusterName -w
+# jvm memory of the service, the resource profile of the container overrides it
+export PULSAR_SERVICE_MEM=${PULSAR_SERVICE_MEM:-"-Xmx128M"}
 exec /usr/bin/supervisord -c /etc/supervisord.conf
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Results of a benchmark, written as json to `target/benchmark-results/<benchmark>.json`.
+ *
+ * <p>A benchmark records one run per scenario, e.g. per topic or per parameter combination of
+ * its matrix, so the results of several builds can be compared scenario by scenario.
+ */
+@Slf4j
+public class BenchmarkResults {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final String benchmark;
+    private final long timestamp = System.currentTimeMillis();
+    private final List<Run> runs = new ArrayList<>();
+
+    public BenchmarkResults(String benchmark) {
+        this.benchmark = benchmark;
+    }
+
+    /**
+     * Start recording a new run of the benchmark.
+     *
+     * @return the run, to fill in with its parameters and metrics.
+     */
+    public synchronized Run newRun() {
+        Run run = new Run();
+        runs.add(run);
+        return run;
+    }
+
+    /**
+     * Returns the runs recorded so far, in the order they were started.
+     */
+    public synchronized List<Run> getRuns() {
+        return new ArrayList<>(runs);
+    }
+
+    /**
+     * Write the results to the benchmark results directory.
+     *
+     * @return the written file.
+     */
+    public synchronized File write() throws IOException {
+        String base = System.getProperty("maven.buildDirectory");
+        if (base == null) {
+            base = "target";
+        }
+        File directory = new File(base, "benchmark-results");
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create directory " + directory);
+        }
+        File output = new File(directory, benchmark + ".json");
+
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("benchmark", benchmark);
+        document.put("timestamp", timestamp);
+        List<Map<String, Object>> values = new ArrayList<>(runs.size());
+        runs.forEach(run -> values.add(run.values));
+        document.put("runs", values);
+        MAPPER.writeValue(output, document);
+        log.info("Wrote {} runs of benchmark {} to {}", runs.size(), benchmark, output);
+        return output;
+    }
+
+    /**
+     * A run of a benchmark, an ordered set of named values.
+     */
+    public static class Run {
+
+        private final Map<String, Object> values = new LinkedHashMap<>();
+
+        public synchronized Run with(String name, Object value) {
+            values.put(name, value);
+            return this;
+        }
+
+        /**
+         * Record the percentiles of a latency histogram, whose values are in micros.
+         *
+         * @param name the name of the latency, used as prefix of the percentiles.
+         * @param histogram the histogram of the latency.
+         * @return this run.
+         */
+        public synchronized Run withLatency(String name, Histogram histogram) {
+            values.put(name + "_count", histogram.getTotalCount());
+            values.put(name + "_mean_us", histogram.getMean());
+            values.put(name + "_p50_us", histogram.getValueAtPercentile(50));
+            values.put(name + "_p99_us", histogram.getValueAtPercentile(99));
+            values.put(name + "_p999_us", histogram.getValueAtPercentile(99.9));
+            values.put(name + "_max_us", histogram.getMaxValue());
+            return this;
+        }
+
+        public synchronized Object get(String name) {
+            return values.get(name);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return values.toString();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.benchmark;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Measure the cost of broker side message deduplication, on the publish path and when a topic
+ * with a large backlog is recovered by another broker.
+ *
+ * <p>Topics are created either in the namespace of the benchmark, or in a namespace with
+ * deduplication enabled. Producers are named, as deduplication requires, and start from high
+ * sequence ids, so the broker tracks as many producers as the benchmark runs.
+ *
+ * <p>The overhead runs publish an open-loop load from a number of producers and report the
+ * publish throughput and latency. The dimensions of the matrix are comma separated lists of the
+ * system properties `pulsar.benchmark.deduplication.producers` and `.rates`, each run lasting
+ * `.durationSeconds` after `.warmupSeconds`.
+ *
+ * <p>The recovery runs publish a backlog of `.backlogMessages`, then kill (or gracefully stop) the
+ * broker owning the topic and time how long the producers take to publish again through another
+ * broker, which has to rebuild the deduplication state before the topic is available. The time
+ * includes the failover itself, so the cost of deduplication is the difference to the runs with
+ * deduplication disabled. A broker is added back after each run.
+ */
+@Slf4j
+public class DeduplicationBenchmark extends PulsarClusterBenchmark {
+
+    private static final long HIGH_SEQUENCE_ID = 1L << 40;
+
+    private String dedupNamespace;
+
+    @Override
+    protected String getBenchmarkName() {
+        return "deduplication";
+    }
+
+    @Override
+    protected boolean isClusterPoolable() {
+        // the recovery runs remove brokers from the cluster and add new ones
+        return false;
+    }
+
+    @BeforeClass(alwaysRun = true)
+    public void setupDeduplication() throws Exception {
+        String nsName = generateNamespaceName();
+        pulsarCluster.createNamespace(nsName);
+        pulsarCluster.enableDeduplication(nsName, true);
+        dedupNamespace = "public/" + nsName;
+    }
+
+    @DataProvider(name = "overhead")
+    public Object[][] overhead() {
+        List<Object[]> runs = new ArrayList<>();
+        for (boolean dedup : new boolean[] { false, true }) {
+            for (int producers : intListProperty("producers", "10,100")) {
+                for (int rate : intListProperty("rates", "10000,50000")) {
+                    runs.add(new Object[] { dedup, producers, rate });
+                }
+            }
+        }
+        return runs.toArray(new Object[0][]);
+    }
+
+    @Test(dataProvider = "overhead")
+    public void testDeduplicationOverhead(boolean dedup, int numProducers, int rate) throws Exception {
+        String topic = newTopicName(dedup ? dedupNamespace : namespace, "dedup-overhead", true);
+        List<Producer<byte[]>> producers = createProducers(client, topic, numProducers);
+        LoadGenerator.Result result;
+        try {
+            result = newLoadGenerator(producers)
+                    .phase(LoadGenerator.Phase.warmup(rate, intProperty("warmupSeconds", 2), TimeUnit.SECONDS))
+                    .phase(LoadGenerator.Phase.constant(rate, intProperty("durationSeconds", 10), TimeUnit.SECONDS))
+                    .build()
+                    .run();
+        } finally {
+            closeProducers(producers);
+        }
+
+        BenchmarkResults.Run run = results.newRun()
+                .with("test", "overhead")
+                .with("deduplication", dedup)
+                .with("producers", numProducers)
+                .with("rate_msg_s", rate);
+        result.writeTo(run);
+        log.info("Deduplication overhead : {}", run);
+    }
+
+    @DataProvider(name = "recovery")
+    public Object[][] recovery() {
+        List<Object[]> runs = new ArrayList<>();
+        for (boolean dedup : new boolean[] { false, true }) {
+            for (String restart : listProperty("restarts", "kill,graceful")) {
+                runs.add(new Object[] { dedup, "graceful".equals(restart) });
+            }
+        }
+        return runs.toArray(new Object[0][]);
+    }
+
+    @Test(dataProvider = "recovery")
+    public void testDeduplicationRecovery(boolean dedup, boolean graceful) throws Exception {
+        String topic = newTopicName(dedup ? dedupNamespace : namespace, "dedup-recovery", true);
+        int numProducers = intProperty("recoveryProducers", 100);
+        int backlogMessages = intProperty("backlogMessages", 1_000_000);
+        int backlogRate = intProperty("backlogRate", 50000);
+
+        // a killed broker only loses its topics once its zookeeper session expires
+        @Cleanup
+        PulsarClient recoveryClient = PulsarClient.builder()
+                .serviceUrl(pulsarCluster.getPlainTextServiceUrl())
+                .operationTimeout(5, TimeUnit.MINUTES)
+                .build();
+        // keep the published messages as backlog
+        recoveryClient.newConsumer().topic(topic).subscriptionName("backlog").subscribe().close();
+
+        List<Producer<byte[]>> producers = createProducers(recoveryClient, topic, numProducers);
+        long[] lastSequenceIds = new long[numProducers];
+        LoadGenerator.Result backlog;
+        try {
+            backlog = newLoadGenerator(producers)
+                    .phase(LoadGenerator.Phase.constant(backlogRate,
+                            Math.max(1, (long) backlogMessages * 1000 / backlogRate), TimeUnit.MILLISECONDS))
+                    .build()
+                    .run();
+            for (int i = 0; i < numProducers; i++) {
+                lastSequenceIds[i] = producers.get(i).getLastSequenceId();
+            }
+        } finally {
+            closeProducers(producers);
+        }
+
+        String owner = pulsarCluster.getTopicOwner(topic);
+        long start = System.nanoTime();
+        long stopMillis = pulsarCluster.removeBroker(owner, graceful);
+        List<Producer<byte[]>> recovered = new ArrayList<>(numProducers);
+        long recoveryMillis;
+        try {
+            recovered.add(createProducer(recoveryClient, topic, 0));
+            recovered.get(0).send(new byte[0]);
+            recoveryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            for (int i = 1; i < numProducers; i++) {
+                recovered.add(createProducer(recoveryClient, topic, i));
+            }
+        } finally {
+            closeProducers(recovered);
+            pulsarCluster.addBrokers(1);
+        }
+
+        BenchmarkResults.Run run = results.newRun()
+                .with("test", "recovery")
+                .with("deduplication", dedup)
+                .with("graceful", graceful)
+                .with("producers", numProducers)
+                .with("backlog_messages", backlog.getAcked())
+                .with("broker_stop_ms", stopMillis)
+                .with("recovery_ms", recoveryMillis);
+        log.info("Deduplication recovery : {}", run);
+
+        if (dedup) {
+            // the recovered state hands every producer the last sequence id it persisted
+            for (int i = 1; i < numProducers; i++) {
+                assertEquals(recovered.get(i).getLastSequenceId(), lastSequenceIds[i],
+                        "Deduplication state of producer " + i + " was not recovered");
+            }
+        }
+    }
+
+    private LoadGenerator.LoadGeneratorBuilder<byte[]> newLoadGenerator(List<Producer<byte[]>> producers) {
+        byte[] payload = new byte[intProperty("messageSize", 256)];
+        return LoadGenerator.<byte[]>builder()
+                .producers(producers)
+                .value(sequence -> payload)
+                .virtualProducers(producers.size());
+    }
+
+    private static List<Producer<byte[]>> createProducers(PulsarClient client, String topic, int numProducers)
+            throws Exception {
+        List<Producer<byte[]>> producers = new ArrayList<>(numProducers);
+        try {
+            for (int i = 0; i < numProducers; i++) {
+                producers.add(createProducer(client, topic, i));
+            }
+        } catch (Exception e) {
+            closeProducers(producers);
+            throw e;
+        }
+        return producers;
+    }
+
+    /**
+     * Create a named producer, as deduplication tracks sequence ids per producer name. The
+     * sequence ids are spaced so no two producers ever share one.
+     */
+    private static Producer<byte[]> createProducer(PulsarClient client, String topic, int index) throws Exception {
+        return client.newProducer()
+                .topic(topic)
+                .producerName("dedup-producer-" + index)
+                .initialSequenceId(HIGH_SEQUENCE_ID * (index + 1))
+                .enableBatching(false)
+                .blockIfQueueFull(false)
+                .create();
+    }
+
+    private static void closeProducers(List<Producer<byte[]>> producers) throws Exception {
+        for (Producer<byte[]> producer : producers) {
+            producer.close();
+        }
+    }
+}
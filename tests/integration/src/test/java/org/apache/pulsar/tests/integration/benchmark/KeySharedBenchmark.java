@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.benchmark;
+
+import static org.testng.Assert.assertEquals;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.api.BatcherBuilder;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.testng.annotations.Test;
+
+/**
+ * Measure the dispatch of a Key_Shared subscription with millions of distinct keys and dozens of
+ * consumers, and how it rebalances when consumers come and go.
+ *
+ * <p>An open-loop load of keyed messages is consumed by the subscription. Once steady, a consumer
+ * joins the subscription and later one of the original consumers leaves it. The
+ * {@link StickyKeyVerifier} checks that keys stay on their consumer, and times how long the slots
+ * take to move after each membership change. The run reports the dispatch throughput, the skew of
+ * the messages and of the key slots across consumers, the stickiness violations and the rebalance
+ * times.
+ *
+ * <p>The run is tuned with the system properties `pulsar.benchmark.key-shared.keys`,
+ * `.consumers`, `.rate`, `.messageSize`, `.warmupSeconds` and `.phaseSeconds`, the
+ * time between the membership changes. The phases default to at least 10 seconds and long enough
+ * for the measured load to send every key once. The run reports how many distinct keys were
+ * actually sent next to the configured number.
+ */
+@Slf4j
+public class KeySharedBenchmark extends PulsarClusterBenchmark {
+
+    @Override
+    protected String getBenchmarkName() {
+        return "key-shared";
+    }
+
+    @Test
+    public void testKeySharedDispatch() throws Exception {
+        int keys = intProperty("keys", 2_000_000);
+        int numConsumers = intProperty("consumers", 24);
+        int rate = intProperty("rate", 20000);
+        int warmupSeconds = intProperty("warmupSeconds", 2);
+        // the three measured phases cycle through all the keys at least once
+        int phaseSeconds = intProperty("phaseSeconds", Math.max(10, (keys + 3 * rate - 1) / (3 * rate)));
+        // a non-partitioned topic, since each partition splits the key slots between the consumers on its own
+        String topic = newTopicName("key-shared", true);
+
+        @Cleanup
+        PulsarClient consumerClient = PulsarClient.builder()
+                .serviceUrl(pulsarCluster.getPlainTextServiceUrl())
+                .listenerThreads(Runtime.getRuntime().availableProcessors())
+                .build();
+        // one more consumer joins during the run
+        MessageTracker tracker = new MessageTracker(numConsumers + 1);
+        StickyKeyVerifier verifier = new StickyKeyVerifier();
+        List<Consumer<byte[]>> consumers = new ArrayList<>(numConsumers + 1);
+        for (int i = 0; i < numConsumers; i++) {
+            consumers.add(subscribe(consumerClient, topic, i, tracker, verifier));
+        }
+
+        List<Producer<byte[]>> producers = new ArrayList<>();
+        for (int i = 0; i < intProperty("producers", 4); i++) {
+            producers.add(client.newProducer()
+                    .topic(topic)
+                    .enableBatching(true)
+                    .batcherBuilder(BatcherBuilder.KEY_BASED)
+                    .batchingMaxPublishDelay(1, TimeUnit.MILLISECONDS)
+                    .blockIfQueueFull(false)
+                    .create());
+        }
+        byte[] payload = new byte[intProperty("messageSize", 128)];
+        // the customizer sees every message the generator sends, in sequence order
+        AtomicLong messagesSent = new AtomicLong();
+        CompletableFuture<Long> measuredStart = new CompletableFuture<>();
+        LoadGenerator<byte[]> generator = LoadGenerator.<byte[]>builder()
+                .producers(producers)
+                .value(sequence -> payload)
+                .messageCustomizer((message, sequence) -> {
+                    message.key("key-" + (sequence % keys));
+                    messagesSent.set(sequence + 1);
+                })
+                .virtualProducers(intProperty("virtualProducers", 100))
+                .poisson(true)
+                .phase(LoadGenerator.Phase.warmup(rate, warmupSeconds, TimeUnit.SECONDS))
+                .phase(LoadGenerator.Phase.constant(rate, 3L * phaseSeconds, TimeUnit.SECONDS))
+                .onMeasuredStart(measuredFromNanos -> {
+                    tracker.setMeasuredFromNanos(measuredFromNanos);
+                    measuredStart.complete(measuredFromNanos);
+                })
+                .build();
+
+        @Cleanup("shutdownNow")
+        ExecutorService loadExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("key-shared-load"));
+        LoadGenerator.Result result;
+        long joinMoves;
+        long joinRebalanceMillis;
+        long movesBeforeLeave;
+        try {
+            Future<LoadGenerator.Result> load = loadExecutor.submit(generator::run);
+            long measuredFrom = measuredStart.get(1, TimeUnit.MINUTES);
+
+            TimeUnit.NANOSECONDS.sleep(measuredFrom + TimeUnit.SECONDS.toNanos(phaseSeconds) - System.nanoTime());
+            verifier.membershipChanged();
+            consumers.add(subscribe(consumerClient, topic, numConsumers, tracker, verifier));
+            long movesBeforeJoin = verifier.getMoves();
+
+            TimeUnit.SECONDS.sleep(phaseSeconds);
+            joinMoves = verifier.getMoves() - movesBeforeJoin;
+            joinRebalanceMillis = verifier.getRebalanceMillis();
+            movesBeforeLeave = verifier.getMoves();
+            verifier.membershipChanged();
+            consumers.get(0).close();
+
+            result = load.get();
+            tracker.awaitReceived(result.getAcked(), 30, TimeUnit.SECONDS);
+        } finally {
+            for (Producer<byte[]> producer : producers) {
+                producer.close();
+            }
+            for (Consumer<byte[]> consumer : consumers) {
+                consumer.close();
+            }
+        }
+        long leaveMoves = verifier.getMoves() - movesBeforeLeave;
+
+        // the first consumer left, the slots are spread over the others
+        int[] slotCounts = Arrays.copyOfRange(verifier.getSlotCounts(numConsumers + 1), 1, numConsumers + 1);
+        double meanSlots = Arrays.stream(slotCounts).average().orElse(0);
+        BenchmarkResults.Run run = results.newRun()
+                .with("keys", keys)
+                .with("keys_sent", Math.min(keys, messagesSent.get()))
+                .with("consumers", numConsumers)
+                .with("rate_msg_s", rate)
+                .with("dispatch_rate_msg_s", tracker.getReceived() / (3.0 * phaseSeconds))
+                .with("slot_max_to_mean", meanSlots == 0 ? 0 : Arrays.stream(slotCounts).max().getAsInt() / meanSlots)
+                .with("sticky_key_violations", verifier.getViolations())
+                .with("join_moved_slots", joinMoves)
+                .with("join_rebalance_ms", joinRebalanceMillis)
+                .with("leave_moved_slots", leaveMoves)
+                .with("leave_rebalance_ms", verifier.getRebalanceMillis());
+        result.writeTo(run);
+        tracker.writeTo(run);
+        log.info("Key_Shared dispatch : {}", run);
+
+        assertEquals(verifier.getViolations(), 0, "Keys moved between consumers without a membership change");
+        assertEquals(tracker.getReceived(), result.getAcked(), "Not all acknowledged messages were dispatched");
+    }
+
+    private static Consumer<byte[]> subscribe(PulsarClient client, String topic, int index,
+                                              MessageTracker tracker, StickyKeyVerifier verifier) throws Exception {
+        return client.newConsumer()
+                .topic(topic)
+                .subscriptionName("benchmark")
+                .subscriptionType(SubscriptionType.Key_Shared)
+                .messageListener((consumer, message) -> {
+                    tracker.record(index, message);
+                    verifier.record(index, message);
+                    consumer.acknowledgeAsync(message);
+                })
+                .subscribe();
+    }
+}
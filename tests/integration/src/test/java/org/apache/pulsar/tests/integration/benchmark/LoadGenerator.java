@@ -0,0 +1,432 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.benchmark;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.TypedMessageBuilder;
+
+/**
+ * An open-loop load generator, which sends messages on a schedule regardless of how fast they
+ * are acknowledged.
+ *
+ * <p>The load is a sequence of {@link Phase}s, each with a constant or linearly ramping rate, so
+ * steps are consecutive constant phases. The rate is shared by a number of virtual producers,
+ * each an independent stream of arrivals at evenly spaced times or, with {@code poisson}, at
+ * exponentially distributed intervals. Virtual producers are mapped round robin onto the given
+ * pulsar producers.
+ *
+ * <p>The latency of a message is measured from the time it was scheduled to be sent rather than
+ * from the time it was actually sent, so a stalled broker, or a generator falling behind its
+ * schedule, shows in the latency instead of silently lowering the rate (coordinated omission).
+ * Messages carry their scheduled send time in {@link #INTENDED_SEND_NANOS_PROPERTY}, so consumers
+ * in the test jvm can measure end to end latencies the same way, and their sequence number in
+ * {@link #SEQUENCE_PROPERTY}, so they can tell lost and duplicated messages.
+ */
+@Slf4j
+@Builder
+public class LoadGenerator<T> {
+
+    public static final String INTENDED_SEND_NANOS_PROPERTY = "intended-send-nanos";
+    public static final String SEQUENCE_PROPERTY = "load-sequence";
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The pulsar producers the virtual producers send with.
+     */
+    @Singular
+    private final List<Producer<T>> producers;
+
+    /**
+     * The value of the message with the given sequence number.
+     */
+    private final LongFunction<T> value;
+
+    /**
+     * Customizes the message with the given sequence number before it is sent, e.g. to set its key.
+     */
+    private final BiConsumer<TypedMessageBuilder<T>, Long> messageCustomizer;
+
+    @Singular
+    private final List<Phase> phases;
+
+    @Default
+    private final int virtualProducers = 1;
+
+    @Default
+    private final boolean poisson = false;
+
+    /**
+     * Called before the first message is sent with the time the first measured phase starts, as per
+     * {@link System#nanoTime()}, e.g. for a {@link MessageTracker} to measure the same messages as
+     * the result of the run.
+     */
+    private final LongConsumer onMeasuredStart;
+
+    /**
+     * How long to wait for the messages in flight once the schedule is done.
+     */
+    @Default
+    private final long drainTimeoutMillis = TimeUnit.SECONDS.toMillis(60);
+
+    /**
+     * A phase of the load.
+     */
+    @Getter
+    public static class Phase {
+
+        private final double startRate;
+        private final double endRate;
+        private final long durationNanos;
+        private final boolean measured;
+
+        private Phase(double startRate, double endRate, long durationNanos, boolean measured) {
+            checkArgument(startRate >= 0 && endRate >= 0, "Rates must not be negative");
+            checkArgument(durationNanos > 0, "Duration must be positive");
+            this.startRate = startRate;
+            this.endRate = endRate;
+            this.durationNanos = durationNanos;
+            this.measured = measured;
+        }
+
+        /**
+         * A phase at a constant rate of messages per second across all virtual producers.
+         */
+        public static Phase constant(double rate, long duration, TimeUnit unit) {
+            return new Phase(rate, rate, unit.toNanos(duration), true);
+        }
+
+        /**
+         * A phase whose rate ramps linearly from one rate to another.
+         */
+        public static Phase ramp(double fromRate, double toRate, long duration, TimeUnit unit) {
+            return new Phase(fromRate, toRate, unit.toNanos(duration), true);
+        }
+
+        /**
+         * A phase at a constant rate whose messages are sent but not measured.
+         */
+        public static Phase warmup(double rate, long duration, TimeUnit unit) {
+            return new Phase(rate, rate, unit.toNanos(duration), false);
+        }
+
+        double rateAt(long offsetNanos) {
+            return startRate + (endRate - startRate) * offsetNanos / durationNanos;
+        }
+    }
+
+    /**
+     * The outcome of a load run, over its measured phases.
+     */
+    @Getter
+    public static class Result {
+
+        /**
+         * The latency from the scheduled send time until the message is acknowledged, in micros.
+         */
+        private final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        /**
+         * The latency from the actual send time until the message is acknowledged, in micros. The
+         * gap to {@link #getLatency()} is the queueing the open-loop schedule exposes.
+         */
+        private final Histogram serviceLatency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        private final LongAdder sentAdder = new LongAdder();
+        private final LongAdder ackedAdder = new LongAdder();
+        private final LongAdder failedAdder = new LongAdder();
+        private long measuredNanos;
+        private long maxScheduleLagMicros;
+
+        public long getSent() {
+            return sentAdder.sum();
+        }
+
+        public long getAcked() {
+            return ackedAdder.sum();
+        }
+
+        public long getFailed() {
+            return failedAdder.sum();
+        }
+
+        /**
+         * Returns the acknowledged messages per second of the measured phases.
+         */
+        public double getAckedRate() {
+            return measuredNanos == 0 ? 0 : getAcked() / (measuredNanos / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        /**
+         * Record the results of the run into a benchmark run.
+         */
+        public BenchmarkResults.Run writeTo(BenchmarkResults.Run run) {
+            return run.with("sent", getSent())
+                    .with("acked", getAcked())
+                    .with("failed", getFailed())
+                    .with("acked_rate_msg_s", getAckedRate())
+                    .with("max_schedule_lag_us", maxScheduleLagMicros)
+                    .withLatency("latency", latency)
+                    .withLatency("service_latency", serviceLatency);
+        }
+    }
+
+    /**
+     * Returns the time the given message was scheduled to be sent, as per {@link System#nanoTime()},
+     * or -1 if it wasn't sent by a load generator.
+     */
+    public static long getIntendedSendNanos(Message<?> message) {
+        String intendedNanos = message.getProperty(INTENDED_SEND_NANOS_PROPERTY);
+        return null == intendedNanos ? -1 : Long.parseLong(intendedNanos);
+    }
+
+    /**
+     * Returns the sequence number of the given message, or -1 if it wasn't sent by a load generator.
+     */
+    public static long getSequence(Message<?> message) {
+        String sequence = message.getProperty(SEQUENCE_PROPERTY);
+        return null == sequence ? -1 : Long.parseLong(sequence);
+    }
+
+    private static class VirtualProducer {
+        final int index;
+        long nextOffsetNanos;
+
+        VirtualProducer(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * An arrival of the schedule: the virtual producer that sends and when, as an offset from the
+     * start of the load.
+     */
+    @Getter
+    static class Arrival {
+        private final int virtualProducer;
+        private final long offsetNanos;
+
+        Arrival(int virtualProducer, long offsetNanos) {
+            this.virtualProducer = virtualProducer;
+            this.offsetNanos = offsetNanos;
+        }
+    }
+
+    /**
+     * The arrivals of all virtual producers over the phases of the load, in time order.
+     */
+    class Schedule {
+
+        private final long totalNanos = phases.stream().mapToLong(Phase::getDurationNanos).sum();
+        private final PriorityQueue<VirtualProducer> queue = new PriorityQueue<>(
+                Comparator.comparingLong((VirtualProducer vp) -> vp.nextOffsetNanos));
+
+        Schedule() {
+            for (int i = 0; i < virtualProducers; i++) {
+                VirtualProducer vp = new VirtualProducer(i);
+                // spread the first arrivals of evenly spaced virtual producers over their first interval
+                vp.nextOffsetNanos = arrivalOffsetNanos(0,
+                        poisson ? nextExponential() : (i + 1) / (double) virtualProducers);
+                queue.add(vp);
+            }
+        }
+
+        /**
+         * Returns the next arrival, or null once all phases are done.
+         */
+        Arrival next() {
+            VirtualProducer vp = queue.poll();
+            if (null == vp || vp.nextOffsetNanos >= totalNanos) {
+                return null;
+            }
+            Arrival arrival = new Arrival(vp.index, vp.nextOffsetNanos);
+            vp.nextOffsetNanos = arrivalOffsetNanos(arrival.offsetNanos, poisson ? nextExponential() : 1);
+            queue.add(vp);
+            return arrival;
+        }
+    }
+
+    /**
+     * Run the load, blocking until all phases are done and the messages in flight are acknowledged
+     * or failed.
+     *
+     * @return the results of the measured phases.
+     */
+    public Result run() throws Exception {
+        checkArgument(!producers.isEmpty(), "No producers to generate load with");
+        checkArgument(!phases.isEmpty(), "No phases of load");
+        checkArgument(virtualProducers > 0, "At least one virtual producer is needed");
+
+        Result result = new Result();
+        result.measuredNanos = phases.stream().filter(Phase::isMeasured).mapToLong(Phase::getDurationNanos).sum();
+        AtomicLong inFlight = new AtomicLong();
+        Schedule schedule = new Schedule();
+
+        long sequence = 0;
+        long startNanos = System.nanoTime();
+        if (null != onMeasuredStart) {
+            measuredStartOffsetNanos().ifPresent(offset -> onMeasuredStart.accept(startNanos + offset));
+        }
+        Arrival arrival;
+        while (null != (arrival = schedule.next())) {
+            long offset = arrival.offsetNanos;
+            long intendedNanos = startNanos + offset;
+            long now;
+            while ((now = System.nanoTime()) < intendedNanos) {
+                LockSupport.parkNanos(intendedNanos - now);
+            }
+            Phase phase = phaseAt(offset);
+            boolean measured = phase.isMeasured();
+            if (measured) {
+                result.maxScheduleLagMicros = Math.max(result.maxScheduleLagMicros,
+                        TimeUnit.NANOSECONDS.toMicros(now - intendedNanos));
+            }
+            send(arrival.virtualProducer, sequence++, intendedNanos, measured, result, inFlight);
+        }
+        for (Producer<T> producer : producers) {
+            producer.flushAsync();
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        if (inFlight.get() > 0) {
+            log.warn("{} messages are still in flight {} ms after the load ended", inFlight.get(), drainTimeoutMillis);
+        }
+        return result;
+    }
+
+    private void send(int virtualProducer, long sequence, long intendedNanos, boolean measured,
+                      Result result, AtomicLong inFlight) {
+        Producer<T> producer = producers.get(virtualProducer % producers.size());
+        TypedMessageBuilder<T> message = producer.newMessage()
+                .value(value.apply(sequence))
+                .property(INTENDED_SEND_NANOS_PROPERTY, Long.toString(intendedNanos))
+                .property(SEQUENCE_PROPERTY, Long.toString(sequence));
+        if (null != messageCustomizer) {
+            messageCustomizer.accept(message, sequence);
+        }
+        long sendNanos = System.nanoTime();
+        inFlight.incrementAndGet();
+        if (measured) {
+            result.sentAdder.increment();
+        }
+        message.sendAsync().whenComplete((messageId, e) -> {
+            inFlight.decrementAndGet();
+            if (!measured) {
+                return;
+            }
+            if (null != e) {
+                result.failedAdder.increment();
+                return;
+            }
+            long ackNanos = System.nanoTime();
+            result.latency.recordValue(toMicros(ackNanos - intendedNanos));
+            result.serviceLatency.recordValue(toMicros(ackNanos - sendNanos));
+            result.ackedAdder.increment();
+        });
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.max(0, Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_TRACKABLE_MICROS));
+    }
+
+    private OptionalLong measuredStartOffsetNanos() {
+        long phaseStart = 0;
+        for (Phase phase : phases) {
+            if (phase.isMeasured()) {
+                return OptionalLong.of(phaseStart);
+            }
+            phaseStart += phase.getDurationNanos();
+        }
+        return OptionalLong.empty();
+    }
+
+    private Phase phaseAt(long offsetNanos) {
+        long phaseStart = 0;
+        for (Phase phase : phases) {
+            if (offsetNanos < phaseStart + phase.getDurationNanos()) {
+                return phase;
+            }
+            phaseStart += phase.getDurationNanos();
+        }
+        return phases.get(phases.size() - 1);
+    }
+
+    /**
+     * Returns the offset at which a virtual producer has accumulated the given number of arrivals
+     * since the given offset, by integrating its share of the rate over the phases. A ramp from rate
+     * zero thus starts sending as soon as its rate picks up, and a phase of rate zero is skipped.
+     *
+     * @param fromNanos the offset to start from.
+     * @param arrivals the number of arrivals, 1 for evenly spaced arrivals or exponentially
+     *                 distributed with mean 1 for poisson arrivals.
+     * @return the offset of the arrival, or {@link Long#MAX_VALUE} if the phases end first.
+     */
+    long arrivalOffsetNanos(long fromNanos, double arrivals) {
+        long offset = fromNanos;
+        long phaseStart = 0;
+        for (Phase phase : phases) {
+            long phaseEnd = phaseStart + phase.getDurationNanos();
+            if (offset < phaseEnd) {
+                // the rate of a virtual producer over the rest of the phase, in arrivals per nano, is a + b * t
+                double a = phase.rateAt(offset - phaseStart) / virtualProducers / NANOS_PER_SECOND;
+                double b = (phase.getEndRate() - phase.getStartRate())
+                        / virtualProducers / NANOS_PER_SECOND / phase.getDurationNanos();
+                double span = phaseEnd - offset;
+                double available = (a + b * span / 2) * span;
+                if (available >= arrivals) {
+                    // solve a * t + b * t^2 / 2 = arrivals, in a form that also holds for b = 0
+                    double t = 2 * arrivals / (a + Math.sqrt(Math.max(0, a * a + 2 * b * arrivals)));
+                    return Math.max(fromNanos + 1, offset + Math.round(t));
+                }
+                arrivals -= available;
+                offset = phaseEnd;
+            }
+            phaseStart = phaseEnd;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static double nextExponential() {
+        return -Math.log(1 - ThreadLocalRandom.current().nextDouble());
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.benchmark;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.TypedMessageBuilder;
+import org.apache.pulsar.tests.integration.benchmark.LoadGenerator.Arrival;
+import org.apache.pulsar.tests.integration.benchmark.LoadGenerator.Phase;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests of the schedule of the {@link LoadGenerator}, which need no cluster.
+ */
+public class LoadGeneratorTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static List<Arrival> arrivals(LoadGenerator<Long> generator) {
+        LoadGenerator<Long>.Schedule schedule = generator.new Schedule();
+        List<Arrival> arrivals = new ArrayList<>();
+        Arrival arrival;
+        while (null != (arrival = schedule.next())) {
+            arrivals.add(arrival);
+        }
+        return arrivals;
+    }
+
+    @Test
+    public void testConstantRateIsEvenlySpaced() {
+        List<Arrival> arrivals = arrivals(LoadGenerator.<Long>builder()
+                .phase(Phase.constant(1000, 1, TimeUnit.SECONDS))
+                .virtualProducers(4)
+                .build());
+
+        // the arrival at the end of the phase is not sent
+        assertEquals(arrivals.size(), 999);
+        for (int i = 0; i < arrivals.size(); i++) {
+            assertEquals(arrivals.get(i).getOffsetNanos(), (i + 1) * MILLIS);
+            assertEquals(arrivals.get(i).getVirtualProducer(), i % 4);
+        }
+    }
+
+    @Test
+    public void testRampFromZeroRate() {
+        List<Arrival> arrivals = arrivals(LoadGenerator.<Long>builder()
+                .phase(Phase.ramp(0, 1000, 1, TimeUnit.SECONDS))
+                .build());
+
+        // the ramp integrates to 500 messages, a quarter of them in its first half
+        assertTrue(Math.abs(arrivals.size() - 500) <= 1, "Unexpected number of arrivals " + arrivals.size());
+        long firstHalf = arrivals.stream().filter(arrival -> arrival.getOffsetNanos() < 500 * MILLIS).count();
+        assertTrue(Math.abs(firstHalf - 125) <= 1, "Unexpected number of arrivals in the first half " + firstHalf);
+        // the first arrival is due once the rate integrates to one message, after sqrt(2 / 1000) seconds
+        assertTrue(Math.abs(arrivals.get(0).getOffsetNanos() - 44721360) <= 1,
+                "Unexpected first arrival " + arrivals.get(0).getOffsetNanos());
+    }
+
+    @Test
+    public void testZeroRatePhaseIsSkipped() {
+        List<Arrival> arrivals = arrivals(LoadGenerator.<Long>builder()
+                .phase(Phase.constant(0, 500, TimeUnit.MILLISECONDS))
+                .phase(Phase.constant(1000, 500, TimeUnit.MILLISECONDS))
+                .build());
+
+        assertEquals(arrivals.size(), 499);
+        assertEquals(arrivals.get(0).getOffsetNanos(), 501 * MILLIS);
+    }
+
+    @Test
+    public void testPoissonMeanRate() {
+        List<Arrival> arrivals = arrivals(LoadGenerator.<Long>builder()
+                .phase(Phase.constant(10000, 10, TimeUnit.SECONDS))
+                .virtualProducers(8)
+                .poisson(true)
+                .build());
+
+        // 100000 arrivals are expected, with a standard deviation of about 316
+        assertTrue(Math.abs(arrivals.size() - 100000) < 3000, "Unexpected number of arrivals " + arrivals.size());
+        for (int i = 1; i < arrivals.size(); i++) {
+            assertTrue(arrivals.get(i).getOffsetNanos() >= arrivals.get(i - 1).getOffsetNanos(),
+                    "Arrivals are not in time order");
+        }
+    }
+
+    @Test
+    public void testRunSendsScheduledMessages() throws Exception {
+        List<Map<String, String>> messages = new ArrayList<>();
+        AtomicLong measuredStart = new AtomicLong(-1);
+        LoadGenerator.Result result = LoadGenerator.<Long>builder()
+                .producer(stubProducer(messages))
+                .value(sequence -> sequence)
+                .phase(Phase.warmup(500, 100, TimeUnit.MILLISECONDS))
+                .phase(Phase.constant(500, 200, TimeUnit.MILLISECONDS))
+                .onMeasuredStart(measuredStart::set)
+                .build()
+                .run();
+
+        // 49 messages in the warmup, every 2 ms from 2 ms on, and 100 measured from 100 ms on
+        assertEquals(messages.size(), 149);
+        for (int i = 0; i < messages.size(); i++) {
+            assertEquals(messages.get(i).get(LoadGenerator.SEQUENCE_PROPERTY), Integer.toString(i));
+        }
+        // the measured start tells the measured messages apart by their scheduled send time
+        long scheduledFromMeasuredStart = messages.stream()
+                .mapToLong(message -> Long.parseLong(message.get(LoadGenerator.INTENDED_SEND_NANOS_PROPERTY)))
+                .filter(intendedNanos -> intendedNanos >= measuredStart.get())
+                .count();
+        assertEquals(scheduledFromMeasuredStart, 100);
+        assertEquals(result.getSent(), 100);
+        assertEquals(result.getAcked(), 100);
+        assertEquals(result.getFailed(), 0);
+    }
+
+    /**
+     * Returns a producer that acknowledges every message right away and collects their properties.
+     */
+    @SuppressWarnings("unchecked")
+    private static Producer<Long> stubProducer(List<Map<String, String>> messages) {
+        return (Producer<Long>) Proxy.newProxyInstance(
+                LoadGeneratorTest.class.getClassLoader(), new Class<?>[] { Producer.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "newMessage":
+                            Map<String, String> properties = new HashMap<>();
+                            messages.add(properties);
+                            return stubMessage(properties);
+                        case "flushAsync":
+                            return CompletableFuture.completedFuture(null);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TypedMessageBuilder<Long> stubMessage(Map<String, String> properties) {
+        return (TypedMessageBuilder<Long>) Proxy.newProxyInstance(
+                LoadGeneratorTest.class.getClassLoader(), new Class<?>[] { TypedMessageBuilder.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "property":
+                            properties.put((String) args[0], (String) args[1]);
+                            return proxy;
+                        case "value":
+                            return proxy;
+                        case "sendAsync":
+                            return CompletableFuture.completedFuture(null);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.benchmark;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageListener;
+
+/**
+ * Tracks the messages of a {@link LoadGenerator} received by a set of consumers.
+ *
+ * <p>Messages are told apart by their load sequence number, so the tracker counts the unique
+ * messages and the duplicates received, whatever the subscription type. Only messages scheduled
+ * after {@link #setMeasuredFromNanos(long)} are counted, the earlier ones are warmup.
+ */
+public class MessageTracker {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final LongAdder[] consumerCounts;
+    private final BitSet receivedSequences = new BitSet();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder redelivered = new LongAdder();
+    /**
+     * The latency from the scheduled send time until the message is received, in micros.
+     */
+    @Getter
+    private final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private volatile long measuredFromNanos = Long.MAX_VALUE;
+
+    public MessageTracker(int numConsumers) {
+        this.consumerCounts = new LongAdder[numConsumers];
+        for (int i = 0; i < numConsumers; i++) {
+            consumerCounts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Count the messages scheduled from the given time on, as per {@link System#nanoTime()}.
+     */
+    public void setMeasuredFromNanos(long measuredFromNanos) {
+        this.measuredFromNanos = measuredFromNanos;
+    }
+
+    /**
+     * Returns a listener that records the messages of the given consumer and acknowledges them.
+     */
+    public <T> MessageListener<T> listener(int consumerIndex) {
+        return (consumer, message) -> {
+            record(consumerIndex, message);
+            consumer.acknowledgeAsync(message);
+        };
+    }
+
+    /**
+     * Record a message received by the given consumer.
+     */
+    public void record(int consumerIndex, Message<?> message) {
+        long receivedNanos = System.nanoTime();
+        long intendedNanos = LoadGenerator.getIntendedSendNanos(message);
+        long sequence = LoadGenerator.getSequence(message);
+        if (intendedNanos < measuredFromNanos || sequence < 0) {
+            return;
+        }
+        if (message.getRedeliveryCount() > 0) {
+            redelivered.increment();
+        }
+        boolean duplicate;
+        synchronized (receivedSequences) {
+            duplicate = receivedSequences.get((int) sequence);
+            receivedSequences.set((int) sequence);
+        }
+        if (duplicate) {
+            duplicates.increment();
+            return;
+        }
+        received.increment();
+        consumerCounts[consumerIndex].increment();
+        latency.recordValue(Math.max(0, Math.min(HIGHEST_TRACKABLE_MICROS,
+                TimeUnit.NANOSECONDS.toMicros(receivedNanos - intendedNanos))));
+    }
+
+    /**
+     * Returns the unique measured messages received.
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    public long getRedelivered() {
+        return redelivered.sum();
+    }
+
+    public long[] getConsumerCounts() {
+        return Arrays.stream(consumerCounts).mapToLong(LongAdder::sum).toArray();
+    }
+
+    /**
+     * Returns whether the message with the given sequence number was received.
+     */
+    public boolean isReceived(long sequence) {
+        synchronized (receivedSequences) {
+            return receivedSequences.get((int) sequence);
+        }
+    }
+
+    /**
+     * Wait until the given number of unique measured messages are received, or the timeout elapses.
+     *
+     * @return whether the messages were received.
+     */
+    public boolean awaitReceived(long expected, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (getReceived() < expected) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Record what the consumers received into a benchmark run, including how evenly the messages
+     * were spread across the consumers.
+     */
+    public BenchmarkResults.Run writeTo(BenchmarkResults.Run run) {
+        long[] counts = getConsumerCounts();
+        long total = Arrays.stream(counts).sum();
+        double mean = total / (double) counts.length;
+        double variance = Arrays.stream(counts).mapToDouble(count -> (count - mean) * (count - mean)).sum()
+                / counts.length;
+        return run.with("received", total)
+                .with("duplicates", getDuplicates())
+                .with("redelivered", getRedelivered())
+                .with("consumer_min_share", total == 0 ? 0 : Arrays.stream(counts).min().getAsLong() / (double) total)
+                .with("consumer_max_share", total == 0 ? 0 : Arrays.stream(counts).max().getAsLong() / (double) total)
+                .with("consumer_share_cv", mean == 0 ? 0 : Math.sqrt(variance) / mean)
+                .with("idle_consumers", Arrays.stream(counts).filter(count -> count == 0).count())
+                .withLatency("end_to_end", latency);
+    }
+}
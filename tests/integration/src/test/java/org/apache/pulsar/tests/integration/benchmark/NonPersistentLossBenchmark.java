@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Measure the rate at which a non-persistent topic starts to drop messages, for a fast and a slow
+ * subscription.
+ *
+ * <p>Non-persistent topics drop the messages a consumer has no permits for, so the loss of a
+ * subscription depends on how fast its consumer is and on its receiver queue size. For each
+ * receiver queue size, the publish rate is stepped up. Each step reports, per subscription, the
+ * delivered rate and the share of the published messages it lost, along with the cpu the brokers
+ * used. The last run of each receiver queue size reports the first rate at which each
+ * subscription lost more than `.lossThresholdPpm` parts per million of the messages.
+ *
+ * <p>The receiver queue sizes are the comma separated list of the system property
+ * `pulsar.benchmark.non-persistent-loss.receiverQueueSizes`, the rates of the steps are `.rates`,
+ * each lasting `.stepSeconds`. The slow consumer spends `.slowConsumerDelayMicros` on each
+ * message.
+ */
+@Slf4j
+public class NonPersistentLossBenchmark extends PulsarClusterBenchmark {
+
+    private static final String[] SUBSCRIPTIONS = { "fast", "slow" };
+
+    @Override
+    protected String getBenchmarkName() {
+        return "non-persistent-loss";
+    }
+
+    @DataProvider(name = "receiverQueueSizes")
+    public Object[][] receiverQueueSizes() {
+        return intListProperty("receiverQueueSizes", "100,1000").stream()
+                .map(size -> new Object[] { size })
+                .toArray(Object[][]::new);
+    }
+
+    @Test(dataProvider = "receiverQueueSizes")
+    public void testLossRate(int receiverQueueSize) throws Exception {
+        String topic = newTopicName("loss", false);
+        long slowConsumerDelayMicros = intProperty("slowConsumerDelayMicros", 500);
+        double lossThreshold = intProperty("lossThresholdPpm", 1000) / 1_000_000.0;
+
+        // each subscription gets a client of its own, so the slow listener doesn't hold up the fast one
+        List<PulsarClient> consumerClients = new ArrayList<>();
+        List<Consumer<byte[]>> consumers = new ArrayList<>();
+        AtomicReferenceArray<MessageTracker> trackers = new AtomicReferenceArray<>(SUBSCRIPTIONS.length);
+        @Cleanup
+        Producer<byte[]> producer = client.newProducer()
+                .topic(topic)
+                .enableBatching(false)
+                .blockIfQueueFull(false)
+                .create();
+        try {
+            for (int i = 0; i < SUBSCRIPTIONS.length; i++) {
+                PulsarClient consumerClient = PulsarClient.builder()
+                        .serviceUrl(pulsarCluster.getPlainTextServiceUrl())
+                        .build();
+                consumerClients.add(consumerClient);
+                int subscription = i;
+                boolean slow = "slow".equals(SUBSCRIPTIONS[i]);
+                consumers.add(consumerClient.newConsumer()
+                        .topic(topic)
+                        .subscriptionName(SUBSCRIPTIONS[i])
+                        .subscriptionType(SubscriptionType.Exclusive)
+                        .receiverQueueSize(receiverQueueSize)
+                        .messageListener((consumer, message) -> {
+                            if (slow) {
+                                slowDown(slowConsumerDelayMicros);
+                            }
+                            trackers.get(subscription).record(0, message);
+                            consumer.acknowledgeAsync(message);
+                        })
+                        .subscribe());
+            }
+
+            int stepSeconds = intProperty("stepSeconds", 10);
+            int[] lossOnsetRates = new int[SUBSCRIPTIONS.length];
+            for (int rate : intListProperty("rates", "1000,2000,5000,10000,20000,50000")) {
+                for (int i = 0; i < SUBSCRIPTIONS.length; i++) {
+                    MessageTracker tracker = new MessageTracker(1);
+                    tracker.setMeasuredFromNanos(System.nanoTime());
+                    trackers.set(i, tracker);
+                }
+                byte[] payload = new byte[intProperty("messageSize", 256)];
+                LoadGenerator<byte[]> generator = LoadGenerator.<byte[]>builder()
+                        .producer(producer)
+                        .value(sequence -> payload)
+                        .virtualProducers(intProperty("virtualProducers", 10))
+                        .phase(LoadGenerator.Phase.constant(rate, stepSeconds, TimeUnit.SECONDS))
+                        .build();
+                long cpuStart = getBrokersCpuNanos();
+                LoadGenerator.Result result = generator.run();
+                // the rate only counts what was delivered during the step
+                long[] deliveredInStep = new long[SUBSCRIPTIONS.length];
+                for (int i = 0; i < SUBSCRIPTIONS.length; i++) {
+                    deliveredInStep[i] = trackers.get(i).getReceived();
+                }
+                long cpuNanos = getBrokersCpuNanos() - cpuStart;
+                for (int i = 0; i < SUBSCRIPTIONS.length; i++) {
+                    // what is left in the receiver queues is delivered, not lost
+                    trackers.get(i).awaitReceived(result.getAcked(), 5, TimeUnit.SECONDS);
+                }
+
+                BenchmarkResults.Run run = results.newRun()
+                        .with("receiver_queue_size", receiverQueueSize)
+                        .with("rate_msg_s", rate)
+                        .with("published", result.getAcked())
+                        .with("publish_failed", result.getFailed())
+                        .with("broker_cpu_cores", cpuNanos / (double) TimeUnit.SECONDS.toNanos(stepSeconds));
+                for (int i = 0; i < SUBSCRIPTIONS.length; i++) {
+                    long delivered = trackers.get(i).getReceived();
+                    double loss = result.getAcked() == 0 ? 0 : 1 - delivered / (double) result.getAcked();
+                    run.with(SUBSCRIPTIONS[i] + "_delivered_rate_msg_s", deliveredInStep[i] / (double) stepSeconds)
+                            .with(SUBSCRIPTIONS[i] + "_loss", loss)
+                            .withLatency(SUBSCRIPTIONS[i] + "_end_to_end", trackers.get(i).getLatency());
+                    if (loss > lossThreshold && lossOnsetRates[i] == 0) {
+                        lossOnsetRates[i] = rate;
+                    }
+                }
+                log.info("Non-persistent loss : {}", run);
+            }
+
+            BenchmarkResults.Run summary = results.newRun()
+                    .with("receiver_queue_size", receiverQueueSize)
+                    .with("loss_threshold", lossThreshold);
+            for (int i = 0; i < SUBSCRIPTIONS.length; i++) {
+                // 0 when the subscription kept up with every rate
+                summary.with(SUBSCRIPTIONS[i] + "_loss_onset_rate_msg_s", lossOnsetRates[i]);
+            }
+            log.info("Non-persistent loss onset : {}", summary);
+        } finally {
+            for (Consumer<byte[]> consumer : consumers) {
+                consumer.close();
+            }
+            for (PulsarClient consumerClient : consumerClients) {
+                consumerClient.close();
+            }
+        }
+    }
+
+    private static void slowDown(long micros) {
+        long end = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(micros);
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            LockSupport.parkNanos(end - now);
+        }
+    }
+}
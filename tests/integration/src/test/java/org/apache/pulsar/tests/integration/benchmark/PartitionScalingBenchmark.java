@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.benchmark;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.apache.pulsar.client.admin.PulsarAdmin;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.MessageRoutingMode;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.tests.integration.topologies.PulsarClusterSpec;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Measure how the throughput of a partitioned topic scales with its number of partitions.
+ *
+ * <p>Each step creates a topic with more partitions, spread over the brokers of the cluster. It
+ * measures the time for a producer and the consumers to connect to all the partitions, the
+ * latency of the first lookup of each partition, and the aggregate throughput of a producer
+ * publishing as fast as it can to all partitions and of the consumers draining them. The gain over
+ * the step with the next fewer partitions shows where adding partitions stops helping.
+ *
+ * <p>The steps are the comma separated list of the system property
+ * `pulsar.benchmark.partition-scaling.partitions`. The cluster runs `.brokers` brokers, the
+ * topic is consumed by `.consumers` shared consumers, and each step publishes messages of
+ * `.messageSize` bytes for `.durationSeconds` after `.warmupSeconds`.
+ */
+@Slf4j
+public class PartitionScalingBenchmark extends PulsarClusterBenchmark {
+
+    @Override
+    protected String getBenchmarkName() {
+        return "partition-scaling";
+    }
+
+    @Override
+    protected PulsarClusterSpec.PulsarClusterSpecBuilder beforeSetupCluster(
+            String clusterName,
+            PulsarClusterSpec.PulsarClusterSpecBuilder specBuilder) {
+        return super.beforeSetupCluster(clusterName, specBuilder).numBrokers(intProperty("brokers", 3));
+    }
+
+    @Override
+    protected void completeResults(BenchmarkResults results) {
+        // the steps may run in any order, the gain compares each one with the next smaller one
+        List<BenchmarkResults.Run> runs = results.getRuns();
+        runs.sort(Comparator.comparingInt(run -> (Integer) run.get("partitions")));
+        double previousThroughput = 0;
+        for (BenchmarkResults.Run run : runs) {
+            double throughput = (Double) run.get("producer_throughput_msg_s");
+            run.with("throughput_gain", previousThroughput == 0 ? 1 : throughput / previousThroughput);
+            previousThroughput = throughput;
+        }
+    }
+
+    @DataProvider(name = "steps")
+    public Object[][] steps() {
+        return intListProperty("partitions", "1,4,16,64,256").stream()
+                .map(partitions -> new Object[] { partitions })
+                .toArray(Object[][]::new);
+    }
+
+    @Test(dataProvider = "steps")
+    public void testPartitionScaling(int partitions) throws Exception {
+        String topic = newTopicName("scaling", true);
+        pulsarCluster.createPartitionedTopic(topic, partitions);
+
+        // look the partitions up before the clients connect to them, so the lookups are not warmed up
+        PulsarAdmin admin = pulsarCluster.getAdmin().getPulsarAdmin();
+        Histogram lookupLatency = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+        for (int i = 0; i < partitions; i++) {
+            long lookupStart = System.nanoTime();
+            admin.lookups().lookupTopic(TopicName.get(topic).getPartition(i).toString());
+            lookupLatency.recordValue(Math.min(lookupLatency.getHighestTrackableValue(),
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - lookupStart)));
+        }
+
+        @Cleanup
+        PulsarClient consumerClient = PulsarClient.builder()
+                .serviceUrl(pulsarCluster.getPlainTextServiceUrl())
+                .listenerThreads(Runtime.getRuntime().availableProcessors())
+                .build();
+        LongAdder received = new LongAdder();
+        int numConsumers = intProperty("consumers", 4);
+        List<Consumer<byte[]>> consumers = new ArrayList<>(numConsumers);
+        long subscribeStart = System.nanoTime();
+        for (int i = 0; i < numConsumers; i++) {
+            consumers.add(consumerClient.newConsumer()
+                    .topic(topic)
+                    .subscriptionName("benchmark")
+                    .subscriptionType(SubscriptionType.Shared)
+                    .messageListener((consumer, message) -> {
+                        received.increment();
+                        consumer.acknowledgeAsync(message);
+                    })
+                    .subscribe());
+        }
+        long subscribeNanos = System.nanoTime() - subscribeStart;
+
+        int maxPendingMessages = intProperty("maxPendingMessages", 1000);
+        long connectStart = System.nanoTime();
+        @Cleanup
+        Producer<byte[]> producer = client.newProducer()
+                .topic(topic)
+                .messageRoutingMode(MessageRoutingMode.RoundRobinPartition)
+                .enableBatching(true)
+                .batchingMaxPublishDelay(1, TimeUnit.MILLISECONDS)
+                .maxPendingMessages(maxPendingMessages)
+                .maxPendingMessagesAcrossPartitions(maxPendingMessages * Math.max(4, partitions))
+                .blockIfQueueFull(true)
+                .create();
+        long connectNanos = System.nanoTime() - connectStart;
+
+        LongAdder acked = new LongAdder();
+        LongAdder failed = new LongAdder();
+        byte[] payload = new byte[intProperty("messageSize", 1024)];
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(intProperty("warmupSeconds", 2));
+        long durationNanos = TimeUnit.SECONDS.toNanos(intProperty("durationSeconds", 10));
+        long end = warmupEnd + durationNanos;
+        long receivedAtWarmupEnd = -1;
+        long sendNanos;
+        while ((sendNanos = System.nanoTime()) < end) {
+            boolean measured = sendNanos >= warmupEnd;
+            if (measured && receivedAtWarmupEnd < 0) {
+                receivedAtWarmupEnd = received.sum();
+            }
+            producer.sendAsync(payload).whenComplete((messageId, e) -> {
+                if (null != e) {
+                    failed.increment();
+                } else if (measured) {
+                    acked.increment();
+                }
+            });
+        }
+        long receivedInWindow = received.sum() - Math.max(0, receivedAtWarmupEnd);
+        producer.flush();
+        for (Consumer<byte[]> consumer : consumers) {
+            consumer.close();
+        }
+
+        double seconds = durationNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        double producerThroughput = acked.sum() / seconds;
+        double consumerThroughput = receivedInWindow / seconds;
+        BenchmarkResults.Run run = results.newRun()
+                .with("partitions", partitions)
+                .with("brokers", pulsarCluster.getBrokers().size())
+                .with("consumers", numConsumers)
+                .with("producer_connect_ms", TimeUnit.NANOSECONDS.toMillis(connectNanos))
+                .with("consumers_subscribe_ms", TimeUnit.NANOSECONDS.toMillis(subscribeNanos))
+                .with("producer_throughput_msg_s", producerThroughput)
+                .with("consumer_throughput_msg_s", consumerThroughput)
+                .withLatency("lookup", lookupLatency);
+        log.info("Partition scaling : {}", run);
+
+        assertEquals(failed.sum(), 0, "Failed to publish messages to " + topic);
+    }
+}
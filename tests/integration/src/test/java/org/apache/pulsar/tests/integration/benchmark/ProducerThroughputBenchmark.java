@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.benchmark;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.pulsar.client.api.CompressionType;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.ProducerBuilder;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Measure the sustained throughput and publish latency of a producer over a matrix of producer
+ * settings and topic partitions.
+ *
+ * <p>Each run publishes as fast as the producer allows for a fixed duration, after a warmup whose
+ * messages are not measured. The number of messages in flight is bounded by `maxPendingMessages`,
+ * the producer blocks once it is reached. The publish latency of a message is the time from its
+ * `sendAsync` until it is acknowledged by the broker.
+ *
+ * <p>The dimensions of the matrix are comma separated lists of the system properties
+ * `pulsar.benchmark.producer-throughput.messageSizes`, `.batching` (`none` or
+ * `<batchingMaxMessages>:<batchingMaxPublishDelayMs>`), `.compression`, `.maxPendingMessages`
+ * and `.partitions`. The duration of a run is set by `.durationSeconds` and `.warmupSeconds`.
+ */
+@Slf4j
+public class ProducerThroughputBenchmark extends PulsarClusterBenchmark {
+
+    private static final String NO_BATCHING = "none";
+
+    @Override
+    protected String getBenchmarkName() {
+        return "producer-throughput";
+    }
+
+    @DataProvider(name = "matrix")
+    public Object[][] matrix() {
+        List<Object[]> runs = new ArrayList<>();
+        for (int messageSize : intListProperty("messageSizes", "128,1024")) {
+            for (String batching : listProperty("batching", NO_BATCHING + ",1000:1")) {
+                for (String compression : listProperty("compression", "NONE,LZ4")) {
+                    for (int maxPendingMessages : intListProperty("maxPendingMessages", "1000")) {
+                        for (int partitions : intListProperty("partitions", "1,4")) {
+                            runs.add(new Object[] {
+                                messageSize, batching, CompressionType.valueOf(compression),
+                                maxPendingMessages, partitions
+                            });
+                        }
+                    }
+                }
+            }
+        }
+        return runs.toArray(new Object[0][]);
+    }
+
+    @Test(dataProvider = "matrix")
+    public void testProducerThroughput(int messageSize, String batching, CompressionType compression,
+                                       int maxPendingMessages, int partitions) throws Exception {
+        String topic = newTopicName("throughput", true);
+        if (partitions > 1) {
+            pulsarCluster.createPartitionedTopic(topic, partitions);
+        }
+
+        ProducerBuilder<byte[]> producerBuilder = client.newProducer()
+                .topic(topic)
+                .compressionType(compression)
+                .maxPendingMessages(maxPendingMessages)
+                .maxPendingMessagesAcrossPartitions(maxPendingMessages * partitions)
+                .blockIfQueueFull(true);
+        if (NO_BATCHING.equals(batching)) {
+            producerBuilder.enableBatching(false);
+        } else {
+            String[] batchingSettings = batching.split(":");
+            producerBuilder.enableBatching(true)
+                    .batchingMaxMessages(Integer.parseInt(batchingSettings[0]))
+                    .batchingMaxPublishDelay(Long.parseLong(batchingSettings[1]), TimeUnit.MILLISECONDS);
+        }
+        @Cleanup
+        Producer<byte[]> producer = producerBuilder.create();
+
+        Histogram publishLatency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        LongAdder acked = new LongAdder();
+        LongAdder failed = new LongAdder();
+        byte[] payload = new byte[messageSize];
+
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(intProperty("warmupSeconds", 2));
+        long durationNanos = TimeUnit.SECONDS.toNanos(intProperty("durationSeconds", 10));
+        long end = warmupEnd + durationNanos;
+        long sendNanos;
+        while ((sendNanos = System.nanoTime()) < end) {
+            long sendStart = sendNanos;
+            boolean measured = sendStart >= warmupEnd;
+            producer.sendAsync(payload).whenComplete((messageId, e) -> {
+                if (null != e) {
+                    failed.increment();
+                } else if (measured) {
+                    publishLatency.recordValue(Math.min(publishLatency.getHighestTrackableValue(),
+                            TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sendStart)));
+                    acked.increment();
+                }
+            });
+        }
+        producer.flush();
+
+        double seconds = durationNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        double msgsPerSecond = acked.sum() / seconds;
+        BenchmarkResults.Run run = results.newRun()
+                .with("message_size", messageSize)
+                .with("batching", batching)
+                .with("compression", compression.name())
+                .with("max_pending_messages", maxPendingMessages)
+                .with("partitions", partitions)
+                .with("duration_s", seconds)
+                .with("messages", acked.sum())
+                .with("throughput_msg_s", msgsPerSecond)
+                .with("throughput_mb_s", msgsPerSecond * messageSize / (1024 * 1024))
+                .withLatency("publish", publishLatency);
+        log.info("Producer throughput : {}", run);
+
+        assertEquals(failed.sum(), 0, "Failed to publish messages to " + topic);
+    }
+}
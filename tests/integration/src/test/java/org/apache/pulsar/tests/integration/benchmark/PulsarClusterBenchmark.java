@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.tests.integration.containers.BrokerContainer;
+import org.apache.pulsar.tests.integration.topologies.PulsarClusterTestBase;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+
+/**
+ * Base of the benchmarks that run on a single pulsar cluster.
+ *
+ * <p>Each benchmark class gets its own cluster and a namespace to create its topics in. Clients
+ * connect through the proxy of the cluster, since the brokers advertise hostnames that only resolve
+ * inside the docker network, so the measured latencies include the proxy hop. The runs it records
+ * are written to `target/benchmark-results/<benchmark>.json` once the class is done.
+ *
+ * <p>Benchmarks are tuned with system properties prefixed by `pulsar.benchmark.<benchmark>.`.
+ */
+@Slf4j
+public abstract class PulsarClusterBenchmark extends PulsarClusterTestBase {
+
+    protected BenchmarkResults results;
+    protected String namespace;
+    protected PulsarClient client;
+
+    /**
+     * Returns the name of the benchmark, which names its results and prefixes its properties.
+     */
+    protected abstract String getBenchmarkName();
+
+    @BeforeClass(alwaysRun = true)
+    public void setupBenchmark() throws Exception {
+        results = new BenchmarkResults(getBenchmarkName());
+        setupCluster();
+        String nsName = generateNamespaceName();
+        pulsarCluster.createNamespace(nsName);
+        namespace = "public/" + nsName;
+        client = PulsarClient.builder()
+                .serviceUrl(pulsarCluster.getPlainTextServiceUrl())
+                .build();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void teardownBenchmark() throws Exception {
+        try {
+            if (null != client) {
+                client.close();
+            }
+            if (null != results) {
+                completeResults(results);
+                results.write();
+            }
+        } finally {
+            tearDownCluster();
+        }
+    }
+
+    /**
+     * Add the values that compare the runs with each other, once all of them are recorded.
+     *
+     * @param results the results of the benchmark, about to be written.
+     */
+    protected void completeResults(BenchmarkResults results) {
+    }
+
+    protected String newTopicName(String prefix, boolean persistent) {
+        return newTopicName(namespace, prefix, persistent);
+    }
+
+    protected String newTopicName(String namespace, String prefix, boolean persistent) {
+        return (persistent ? "persistent://" : "non-persistent://") + namespace + "/" + prefix + "-" + randomName(8);
+    }
+
+    /**
+     * Returns the cpu time used by the brokers so far, in nanos, as accounted by their cgroups.
+     */
+    protected long getBrokersCpuNanos() throws Exception {
+        long cpuNanos = 0;
+        for (BrokerContainer broker : pulsarCluster.getBrokers()) {
+            String usage = broker.execCmd("sh", "-c",
+                    "cat /sys/fs/cgroup/cpuacct/cpuacct.usage 2>/dev/null || grep usage_usec /sys/fs/cgroup/cpu.stat")
+                    .getStdout().trim();
+            // cgroup v1 accounts nanos, v2 accounts micros
+            cpuNanos += usage.startsWith("usage_usec")
+                    ? TimeUnit.MICROSECONDS.toNanos(Long.parseLong(usage.split("\\s+")[1]))
+                    : Long.parseLong(usage);
+        }
+        return cpuNanos;
+    }
+
+    protected int intProperty(String name, int defaultValue) {
+        return Integer.getInteger(propertyName(name), defaultValue);
+    }
+
+    /**
+     * Returns a comma separated list property, e.g. the values of a dimension of a benchmark matrix.
+     */
+    protected List<String> listProperty(String name, String defaultValue) {
+        return Arrays.stream(System.getProperty(propertyName(name), defaultValue).split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    protected List<Integer> intListProperty(String name, String defaultValue) {
+        return listProperty(name, defaultValue).stream().map(Integer::valueOf).collect(Collectors.toList());
+    }
+
+    private String propertyName(String name) {
+        return "pulsar.benchmark." + getBenchmarkName() + "." + name;
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.benchmark;
+
+import static org.apache.pulsar.tests.integration.topologies.PulsarTestBase.randomName;
+import static org.testng.Assert.assertEquals;
+
+import com.google.common.util.concurrent.RateLimiter;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.pulsar.client.admin.PulsarAdmin;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.SubscriptionInitialPosition;
+import org.apache.pulsar.common.policies.data.ReplicatorStats;
+import org.apache.pulsar.tests.integration.topologies.PulsarCluster;
+import org.apache.pulsar.tests.integration.topologies.PulsarClusterSpec;
+import org.apache.pulsar.tests.integration.topologies.PulsarMultiCluster;
+import org.apache.pulsar.tests.integration.topologies.PulsarMultiClusterSpec;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Measure the geo-replication lag and throughput between two clusters under sustained load.
+ *
+ * <p>Messages are produced at a fixed rate to the topics of the source cluster and consumed
+ * from the same topics of the target cluster. The lag of a message is the time between its
+ * send on the source and its receipt on the target, both taken from the clock of the test.
+ * The replication backlog of each topic is sampled every second while producing. The
+ * throughput counts the messages the target received while the source was producing, the
+ * messages received afterwards only count towards the drain time.
+ *
+ * <p>Clients connect through the proxy of each cluster, since the brokers advertise hostnames
+ * that only resolve on the cluster network.
+ *
+ * <p>The load is tuned with the system properties `pulsar.benchmark.replication.topics`,
+ * `.rate` (messages per second per topic), `.durationSeconds` and `.messageSize`.
+ */
+@Slf4j
+public class ReplicationBenchmark {
+
+    private static final String PROPERTY_PREFIX = "pulsar.benchmark.replication.";
+    private static final int NUM_TOPICS = Integer.getInteger(PROPERTY_PREFIX + "topics", 4);
+    private static final int RATE = Integer.getInteger(PROPERTY_PREFIX + "rate", 500);
+    private static final int DURATION_SECONDS = Integer.getInteger(PROPERTY_PREFIX + "durationSeconds", 30);
+    private static final int MESSAGE_SIZE = Integer.getInteger(PROPERTY_PREFIX + "messageSize", 1024);
+    private static final int DRAIN_TIMEOUT_SECONDS = 120;
+
+    private static final String SEND_NANOS_PROPERTY = "send-nanos";
+
+    private PulsarMultiCluster multiCluster;
+
+    @BeforeClass(alwaysRun = true)
+    public void setupMultiCluster() throws Exception {
+        String suffix = randomName(5);
+        multiCluster = PulsarMultiCluster.forSpec(PulsarMultiClusterSpec.builder()
+                .name("replication-" + suffix)
+                .cluster(clusterSpec("source-" + suffix))
+                .cluster(clusterSpec("target-" + suffix))
+                .build());
+        multiCluster.start();
+    }
+
+    private static PulsarClusterSpec clusterSpec(String clusterName) {
+        return PulsarClusterSpec.builder()
+                .clusterName(clusterName)
+                .numBrokers(1)
+                .build();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void teardownMultiCluster() {
+        if (null != multiCluster) {
+            multiCluster.stop();
+        }
+    }
+
+    @Test
+    public void testReplicationLagAndThroughput() throws Exception {
+        PulsarCluster source = multiCluster.getCluster(0);
+        PulsarCluster target = multiCluster.getCluster(1);
+
+        @Cleanup
+        PulsarClient sourceClient = PulsarClient.builder()
+                .serviceUrl(source.getPlainTextServiceUrl())
+                .build();
+        @Cleanup
+        PulsarClient targetClient = PulsarClient.builder()
+                .serviceUrl(target.getPlainTextServiceUrl())
+                .build();
+        PulsarAdmin sourceAdmin = source.getAdmin().getPulsarAdmin();
+
+        List<TopicLoad> loads = new ArrayList<>(NUM_TOPICS);
+        for (int i = 0; i < NUM_TOPICS; i++) {
+            String topic = "persistent://" + multiCluster.getReplicatedNamespace() + "/replication-" + i
+                    + "-" + randomName(4);
+            TopicLoad load = new TopicLoad(topic);
+            // subscribe on the target first, so no replicated message is missed
+            load.consumer = targetClient.newConsumer()
+                    .topic(topic)
+                    .subscriptionName("replication-benchmark")
+                    .subscriptionInitialPosition(SubscriptionInitialPosition.Earliest)
+                    .messageListener((consumer, msg) -> {
+                        long sendNanos = Long.parseLong(msg.getProperty(SEND_NANOS_PROPERTY));
+                        load.lag.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sendNanos));
+                        load.received.increment();
+                        consumer.acknowledgeAsync(msg);
+                    })
+                    .subscribe();
+            load.producer = sourceClient.newProducer()
+                    .topic(topic)
+                    .blockIfQueueFull(true)
+                    .create();
+            loads.add(load);
+        }
+
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(
+                new DefaultThreadFactory("replication-backlog-sampler"));
+        sampler.scheduleAtFixedRate(() -> loads.forEach(load -> {
+            try {
+                ReplicatorStats stats = sourceAdmin.topics().getStats(load.topic)
+                        .replication.get(target.getClusterName());
+                if (null != stats) {
+                    load.maxBacklog.accumulateAndGet(stats.replicationBacklog, Math::max);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to sample the replication backlog of {}", load.topic, e);
+            }
+        }), 1, 1, TimeUnit.SECONDS);
+
+        byte[] payload = new byte[MESSAGE_SIZE];
+        RateLimiter rateLimiter = RateLimiter.create((double) RATE * NUM_TOPICS);
+        long startTime = System.nanoTime();
+        long endTime = startTime + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+        try {
+            while (System.nanoTime() < endTime) {
+                for (TopicLoad load : loads) {
+                    rateLimiter.acquire();
+                    load.producer.newMessage()
+                            .value(payload)
+                            .property(SEND_NANOS_PROPERTY, Long.toString(System.nanoTime()))
+                            .sendAsync()
+                            .whenComplete((messageId, e) -> {
+                                if (null != e) {
+                                    load.failed.increment();
+                                } else {
+                                    load.sent.increment();
+                                }
+                            });
+                }
+            }
+            for (TopicLoad load : loads) {
+                load.producer.flush();
+            }
+        } finally {
+            sampler.shutdownNow();
+        }
+        long produceNanos = System.nanoTime() - startTime;
+        // the throughput is what the target received while the source produced, not after the drain
+        for (TopicLoad load : loads) {
+            load.receivedWhileProducing = load.received.sum();
+        }
+
+        // wait for the target to catch up, the time it takes is the replication tail
+        long drainStart = System.nanoTime();
+        long drainDeadline = drainStart + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS);
+        while (System.nanoTime() < drainDeadline && loads.stream().anyMatch(TopicLoad::isBehind)) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        long drainMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - drainStart);
+
+        BenchmarkResults results = new BenchmarkResults("replication");
+        for (TopicLoad load : loads) {
+            double seconds = produceNanos / (double) TimeUnit.SECONDS.toNanos(1);
+            BenchmarkResults.Run run = results.newRun()
+                    .with("topic", load.topic)
+                    .with("source", source.getClusterName())
+                    .with("target", target.getClusterName())
+                    .with("rate", RATE)
+                    .with("message_size", MESSAGE_SIZE)
+                    .with("sent", load.sent.sum())
+                    .with("failed", load.failed.sum())
+                    .with("received", load.received.sum())
+                    .with("send_throughput_msg_s", load.sent.sum() / seconds)
+                    .with("throughput_msg_s", load.receivedWhileProducing / seconds)
+                    .with("max_replication_backlog", load.maxBacklog.get())
+                    .with("drain_ms", drainMillis)
+                    .withLatency("replication_lag", load.lag);
+            log.info("Replication of {} : {}", load.topic, run);
+            load.consumer.close();
+            load.producer.close();
+        }
+        results.write();
+
+        for (TopicLoad load : loads) {
+            assertEquals(load.failed.sum(), 0, "Failed to publish messages to " + load.topic);
+            assertEquals(load.received.sum(), load.sent.sum(), "Messages of " + load.topic + " were not replicated");
+        }
+    }
+
+    private static class TopicLoad {
+        final String topic;
+        final Histogram lag = new ConcurrentHistogram(3);
+        final LongAdder sent = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder received = new LongAdder();
+        final AtomicLong maxBacklog = new AtomicLong();
+        long receivedWhileProducing;
+        Producer<byte[]> producer;
+        Consumer<byte[]> consumer;
+
+        TopicLoad(String topic) {
+            this.topic = topic;
+        }
+
+        boolean isBehind() {
+            return received.sum() < sent.sum();
+        }
+    }
+}
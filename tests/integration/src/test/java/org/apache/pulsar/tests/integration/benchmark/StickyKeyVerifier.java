@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.common.util.Murmur3_32Hash;
+
+/**
+ * Verifies that a Key_Shared subscription keeps each key on a single consumer, in constant memory
+ * whatever the number of keys.
+ *
+ * <p>Keys are hashed into the slots the broker splits between the consumers, with the same hash,
+ * so all the keys of a slot are owned by the same consumer. The verifier keeps the owner of each
+ * slot and the membership epoch it was assigned in. A slot moving to another consumer is expected
+ * once after each membership change, any other move breaks the stickiness of its keys. The last
+ * move after a membership change tells how long the subscription took to rebalance.
+ */
+public class StickyKeyVerifier {
+
+    /**
+     * The number of hash slots of a Key_Shared subscription, as split by the broker.
+     */
+    public static final int HASH_RANGE_SIZE = 2 << 15;
+
+    private final int[] slotOwners = new int[HASH_RANGE_SIZE];
+    private final int[] slotEpochs = new int[HASH_RANGE_SIZE];
+    private int epoch = 0;
+    private long epochStartNanos = System.nanoTime();
+    private long lastMoveNanos = -1;
+    private long moves = 0;
+    private long violations = 0;
+
+    public StickyKeyVerifier() {
+        Arrays.fill(slotOwners, -1);
+    }
+
+    public static int getSlot(String key) {
+        return Math.floorMod(Murmur3_32Hash.getInstance().makeHash(key.getBytes(UTF_8)), HASH_RANGE_SIZE);
+    }
+
+    /**
+     * Record that a consumer joined or left the subscription.
+     */
+    public synchronized void membershipChanged() {
+        epoch++;
+        epochStartNanos = System.nanoTime();
+        lastMoveNanos = -1;
+    }
+
+    /**
+     * Record a message received by the given consumer.
+     */
+    public void record(int consumerIndex, Message<?> message) {
+        if (!message.hasKey()) {
+            return;
+        }
+        int slot = getSlot(message.getKey());
+        synchronized (this) {
+            int owner = slotOwners[slot];
+            if (owner == consumerIndex) {
+                return;
+            }
+            if (owner >= 0) {
+                if (slotEpochs[slot] == epoch) {
+                    violations++;
+                } else {
+                    moves++;
+                    lastMoveNanos = System.nanoTime();
+                }
+            }
+            slotOwners[slot] = consumerIndex;
+            slotEpochs[slot] = epoch;
+        }
+    }
+
+    /**
+     * Returns the slots that moved to another consumer after a membership change.
+     */
+    public synchronized long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Returns the times a slot moved to another consumer without a membership change.
+     */
+    public synchronized long getViolations() {
+        return violations;
+    }
+
+    /**
+     * Returns the time from the last membership change until the last slot moved, or 0 if no slot
+     * has moved since.
+     */
+    public synchronized long getRebalanceMillis() {
+        return lastMoveNanos < 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(lastMoveNanos - epochStartNanos);
+    }
+
+    /**
+     * Returns the number of slots owned by each consumer.
+     */
+    public synchronized int[] getSlotCounts(int numConsumers) {
+        int[] counts = new int[numConsumers];
+        for (int owner : slotOwners) {
+            if (owner >= 0) {
+                counts[owner]++;
+            }
+        }
+        return counts;
+    }
+}
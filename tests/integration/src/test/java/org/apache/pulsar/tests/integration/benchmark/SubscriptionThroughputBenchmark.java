@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.benchmark;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.api.BatcherBuilder;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Measure the dispatch throughput of each subscription type, and how evenly the messages are
+ * spread across its consumers.
+ *
+ * <p>Each run drives an open-loop load of keyed messages through a subscription with a number of
+ * consumers, on a topic with a number of partitions. It reports the throughput and end to end
+ * latency of the dispatched messages, the share of the messages each consumer got, and the
+ * redelivered and duplicated messages. Exclusive subscriptions only run with a single consumer.
+ *
+ * <p>The dimensions of the matrix are comma separated lists of the system properties
+ * `pulsar.benchmark.subscription-throughput.subscriptionTypes`, `.consumers` and `.partitions`.
+ * The load is set by `.rate` (messages per second), `.keys`, `.messageSize`, `.producers`,
+ * `.virtualProducers`, `.durationSeconds` and `.warmupSeconds`.
+ */
+@Slf4j
+public class SubscriptionThroughputBenchmark extends PulsarClusterBenchmark {
+
+    @Override
+    protected String getBenchmarkName() {
+        return "subscription-throughput";
+    }
+
+    @DataProvider(name = "matrix")
+    public Object[][] matrix() {
+        Set<List<Object>> runs = new LinkedHashSet<>();
+        for (String subscriptionType : listProperty("subscriptionTypes", "Exclusive,Failover,Shared,Key_Shared")) {
+            SubscriptionType type = SubscriptionType.valueOf(subscriptionType);
+            for (int consumers : intListProperty("consumers", "1,10")) {
+                for (int partitions : intListProperty("partitions", "1,4")) {
+                    runs.add(Arrays.asList(type, type == SubscriptionType.Exclusive ? 1 : consumers, partitions));
+                }
+            }
+        }
+        return runs.stream().map(List::toArray).toArray(Object[][]::new);
+    }
+
+    @Test(dataProvider = "matrix")
+    public void testSubscriptionThroughput(SubscriptionType subscriptionType, int numConsumers, int partitions)
+            throws Exception {
+        String topic = newTopicName("subscription", true);
+        if (partitions > 1) {
+            pulsarCluster.createPartitionedTopic(topic, partitions);
+        }
+
+        // consumers get a client of their own, so their listeners are not serialized on one thread
+        @Cleanup
+        PulsarClient consumerClient = PulsarClient.builder()
+                .serviceUrl(pulsarCluster.getPlainTextServiceUrl())
+                .listenerThreads(Runtime.getRuntime().availableProcessors())
+                .build();
+        MessageTracker tracker = new MessageTracker(numConsumers);
+        List<Consumer<byte[]>> consumers = new ArrayList<>(numConsumers);
+        for (int i = 0; i < numConsumers; i++) {
+            consumers.add(consumerClient.newConsumer()
+                    .topic(topic)
+                    .subscriptionName("benchmark")
+                    .subscriptionType(subscriptionType)
+                    .messageListener(tracker.listener(i))
+                    .subscribe());
+        }
+
+        List<Producer<byte[]>> producers = new ArrayList<>();
+        for (int i = 0; i < intProperty("producers", 4); i++) {
+            producers.add(client.newProducer()
+                    .topic(topic)
+                    .enableBatching(true)
+                    .batcherBuilder(BatcherBuilder.KEY_BASED)
+                    .batchingMaxPublishDelay(1, TimeUnit.MILLISECONDS)
+                    .blockIfQueueFull(false)
+                    .create());
+        }
+
+        int rate = intProperty("rate", 5000);
+        int keys = intProperty("keys", 10000);
+        int warmupSeconds = intProperty("warmupSeconds", 2);
+        int durationSeconds = intProperty("durationSeconds", 10);
+        byte[] payload = new byte[intProperty("messageSize", 256)];
+        LoadGenerator<byte[]> generator = LoadGenerator.<byte[]>builder()
+                .producers(producers)
+                .value(sequence -> payload)
+                .messageCustomizer((message, sequence) -> message.key("key-" + (sequence % keys)))
+                .virtualProducers(intProperty("virtualProducers", 100))
+                .poisson(true)
+                .phase(LoadGenerator.Phase.warmup(rate, warmupSeconds, TimeUnit.SECONDS))
+                .phase(LoadGenerator.Phase.constant(rate, durationSeconds, TimeUnit.SECONDS))
+                .onMeasuredStart(tracker::setMeasuredFromNanos)
+                .build();
+        LoadGenerator.Result result;
+        try {
+            result = generator.run();
+            tracker.awaitReceived(result.getAcked(), 30, TimeUnit.SECONDS);
+        } finally {
+            for (Producer<byte[]> producer : producers) {
+                producer.close();
+            }
+            for (Consumer<byte[]> consumer : consumers) {
+                consumer.close();
+            }
+        }
+
+        BenchmarkResults.Run run = results.newRun()
+                .with("subscription_type", subscriptionType.name())
+                .with("consumers", numConsumers)
+                .with("partitions", partitions)
+                .with("rate_msg_s", rate)
+                .with("keys", keys)
+                .with("dispatch_rate_msg_s", tracker.getReceived() / (double) durationSeconds);
+        result.writeTo(run);
+        tracker.writeTo(run);
+        log.info("Subscription throughput : {}", run);
+
+        assertEquals(tracker.getReceived(), result.getAcked(), "Not all acknowledged messages were dispatched");
+    }
+}
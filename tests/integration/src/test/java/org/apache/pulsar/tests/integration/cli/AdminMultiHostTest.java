@@ -26,6 +26,7 @@ import java.util.concurrent.TimeoutException;
 import org.apache.pulsar.client.admin.PulsarAdmin;
 import org.apache.pulsar.tests.integration.containers.BrokerContainer;
 import org.apache.pulsar.tests.integration.topologies.PulsarCluster;
+import org.apache.pulsar.tests.integration.topologies.PulsarClusterPool;
 import org.apache.pulsar.tests.integration.topologies.PulsarClusterSpec;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
@@ -39,18 +40,21 @@ public class AdminMultiHostTest {
 
     private final String clusterName = "MultiHostTest-" + UUID.randomUUID();
     private final PulsarClusterSpec spec = PulsarClusterSpec.builder().clusterName(clusterName).numBrokers(3).build();
+    private PulsarClusterPool.Lease clusterLease = null;
     private PulsarCluster pulsarCluster = null;
 
     @BeforeMethod
     public void setupCluster() throws Exception {
-        pulsarCluster = PulsarCluster.forSpec(spec);
-        pulsarCluster.start();
+        // the test stops brokers, so the cluster can't be returned to the pool
+        clusterLease = PulsarClusterPool.getInstance().leaseExclusive(spec);
+        pulsarCluster = clusterLease.getCluster();
     }
 
     @AfterMethod
     public void tearDownCluster() {
-        if (pulsarCluster != null) {
-            pulsarCluster.stop();
+        if (clusterLease != null) {
+            clusterLease.close();
+            clusterLease = null;
             pulsarCluster = null;
         }
     }
@@ -60,27 +64,27 @@ public class AdminMultiHostTest {
         String hosts = pulsarCluster.getAllBrokersHttpServiceUrl();
         PulsarAdmin admin = PulsarAdmin.builder().serviceHttpUrl(hosts).build();
         // all brokers alive
-        Assert.assertEquals(admin.brokers().getActiveBrokers(clusterName).size(), 3);
+        Assert.assertEquals(admin.brokers().getActiveBrokers(pulsarCluster.getClusterName()).size(), 3);
 
         // kill one broker admin should be usable
         BrokerContainer one = pulsarCluster.getBroker(0);
         // admin.brokers().
         one.stop();
         waitBrokerDown(admin, 2, 60);
-        Assert.assertEquals(admin.brokers().getActiveBrokers(clusterName).size(), 2);
+        Assert.assertEquals(admin.brokers().getActiveBrokers(pulsarCluster.getClusterName()).size(), 2);
 
         // kill another broker
         BrokerContainer two = pulsarCluster.getBroker(1);
         two.stop();
         waitBrokerDown(admin, 1, 60);
-        Assert.assertEquals(admin.brokers().getActiveBrokers(clusterName).size(), 1);
+        Assert.assertEquals(admin.brokers().getActiveBrokers(pulsarCluster.getClusterName()).size(), 1);
     }
 
     // Because zookeeper session timeout is 30ms and ticktime is 2ms, so we need wait more than 32ms
     private void waitBrokerDown(PulsarAdmin admin, int expectBrokers, int timeout)
         throws InterruptedException, ExecutionException, TimeoutException {
         FutureTask<Boolean> futureTask = new FutureTask<>(() -> {
-            while (admin.brokers().getActiveBrokers(clusterName).size() != expectBrokers) {
+            while (admin.brokers().getActiveBrokers(pulsarCluster.getClusterName()).size() != expectBrokers) {
                 admin.brokers().healthcheck();
                 TimeUnit.MILLISECONDS.sleep(1000);
             }
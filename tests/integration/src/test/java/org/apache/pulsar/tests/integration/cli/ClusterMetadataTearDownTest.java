@@ -37,6 +37,7 @@ import org.apache.pulsar.client.api.SubscriptionInitialPosition;
 import org.apache.pulsar.common.policies.data.TenantInfo;
 import org.apache.pulsar.tests.integration.containers.ChaosContainer;
 import org.apache.pulsar.tests.integration.topologies.PulsarCluster;
+import org.apache.pulsar.tests.integration.topologies.PulsarClusterPool;
 import org.apache.pulsar.tests.integration.topologies.PulsarClusterSpec;
 import org.apache.zookeeper.ZooKeeper;
 import org.testng.annotations.AfterSuite;
@@ -64,12 +65,14 @@ public class ClusterMetadataTearDownTest {
 
     private final PulsarClusterSpec spec = PulsarClusterSpec.builder()
             .clusterName("ClusterMetadataTearDownTest-" + UUID.randomUUID().toString().substring(0, 8))
-            .numProxies(0)
+            // the client connects from outside the cluster network, through the proxy
+            .numProxies(1)
             .numFunctionWorkers(0)
             .enablePrestoWorker(false)
             .build();
 
-    private final PulsarCluster pulsarCluster = PulsarCluster.forSpec(spec);
+    private PulsarClusterPool.Lease clusterLease;
+    private PulsarCluster pulsarCluster;
 
     private ZooKeeper localZk;
     private ZooKeeper configStoreZk;
@@ -83,7 +86,9 @@ public class ClusterMetadataTearDownTest {
 
     @BeforeSuite
     public void setupCluster() throws Exception {
-        pulsarCluster.start();
+        // the metadata is torn down, so the cluster is never returned, and the ledgers are counted from a new cluster
+        clusterLease = PulsarClusterPool.getInstance().leaseExclusive(spec, false);
+        pulsarCluster = clusterLease.getCluster();
         metadataServiceUri = "zk+null://" + pulsarCluster.getZKConnString() + "/ledgers";
 
         final int sessionTimeoutMs = 30000;
@@ -114,7 +119,7 @@ public class ClusterMetadataTearDownTest {
             localZk.close();
         } catch (InterruptedException ignored) {
         }
-        pulsarCluster.stop();
+        clusterLease.close();
     }
 
     @Test
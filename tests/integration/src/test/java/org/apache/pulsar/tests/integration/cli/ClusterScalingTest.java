@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.cli;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.admin.PulsarAdmin;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.Producer;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.Schema;
+import org.apache.pulsar.client.api.SubscriptionInitialPosition;
+import org.apache.pulsar.common.policies.data.TenantInfo;
+import org.apache.pulsar.tests.integration.topologies.PulsarCluster;
+import org.apache.pulsar.tests.integration.topologies.PulsarClusterPool;
+import org.apache.pulsar.tests.integration.topologies.PulsarClusterSpec;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Test scaling a cluster out and back in.
+ */
+@Slf4j
+public class ClusterScalingTest {
+
+    private static final int NUM_MESSAGES = 100;
+    private static final int NUM_BUNDLES = 16;
+
+    private final PulsarClusterSpec spec = PulsarClusterSpec.builder()
+            .clusterName("ClusterScalingTest-" + UUID.randomUUID().toString().substring(0, 8))
+            .numBookies(PulsarCluster.MANAGED_LEDGER_ENSEMBLE_SIZE)
+            .numBrokers(1)
+            // the client connects from outside the cluster network, through the proxy
+            .numProxies(1)
+            .numFunctionWorkers(0)
+            .enablePrestoWorker(false)
+            .build();
+
+    private PulsarClusterPool.Lease clusterLease;
+    private PulsarCluster pulsarCluster;
+
+    @BeforeClass
+    public void setupCluster() throws Exception {
+        // the tests add and remove containers, so the cluster can't be returned to the pool
+        clusterLease = PulsarClusterPool.getInstance().leaseExclusive(spec, false);
+        pulsarCluster = clusterLease.getCluster();
+    }
+
+    @AfterClass
+    public void tearDownCluster() {
+        if (clusterLease != null) {
+            clusterLease.close();
+            clusterLease = null;
+            pulsarCluster = null;
+        }
+    }
+
+    @Test
+    public void testScaleOutAndIn() throws Exception {
+        PulsarAdmin admin = pulsarCluster.getAdmin().getPulsarAdmin();
+        String tenant = "scaling";
+        String namespace = tenant + "/ns";
+        admin.tenants().createTenant(tenant,
+                new TenantInfo(new HashSet<>(), Collections.singleton(pulsarCluster.getClusterName())));
+        admin.namespaces().createNamespace(namespace, NUM_BUNDLES);
+
+        @Cleanup
+        PulsarClient client = PulsarClient.builder()
+                .serviceUrl(pulsarCluster.getPlainTextServiceUrl())
+                .build();
+        String topic = "persistent://" + namespace + "/scaling-topic";
+        // the subscription keeps the messages until they are consumed after scaling
+        client.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("scaling-sub")
+                .subscriptionInitialPosition(SubscriptionInitialPosition.Earliest)
+                .subscribe()
+                .close();
+        try (Producer<String> producer = client.newProducer(Schema.STRING).topic(topic).create()) {
+            for (int i = 0; i < NUM_MESSAGES; i++) {
+                producer.send("message-" + i);
+            }
+        }
+
+        // scale out, the added containers are numbered after the ones of the spec
+        String addedBroker = "pulsar-broker-1";
+        String addedBookie = "pulsar-bookie-" + PulsarCluster.MANAGED_LEDGER_ENSEMBLE_SIZE;
+        pulsarCluster.addBrokers(1);
+        pulsarCluster.addBookies(1);
+        // the lookups of the new topics assign their bundles to both brokers
+        for (int i = 0; i < NUM_BUNDLES * 2; i++) {
+            pulsarCluster.getTopicOwner("persistent://" + namespace + "/lookup-topic-" + i);
+        }
+        pulsarCluster.awaitBundleOwnership(addedBroker, 1, 1, TimeUnit.MINUTES);
+
+        // scale back in, the ledgers of the first bookie are re-replicated to the added bookie
+        pulsarCluster.removeBroker(addedBroker, true);
+        pulsarCluster.decommissionBookie("pulsar-bookie-0", 5, TimeUnit.MINUTES);
+        assertEquals(pulsarCluster.getBookies().size(), PulsarCluster.MANAGED_LEDGER_ENSEMBLE_SIZE);
+        // the remaining bookies can't hold the ensembles without the added bookie
+        try {
+            pulsarCluster.decommissionBookie(addedBookie, 5, TimeUnit.MINUTES);
+            fail("Should not decommission bookie " + addedBookie);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        log.info("Scaled cluster {} back in, bookie {} holds the re-replicated ledgers",
+                pulsarCluster.getClusterName(), addedBookie);
+
+        @Cleanup
+        Consumer<String> consumer = client.newConsumer(Schema.STRING)
+                .topic(topic)
+                .subscriptionName("scaling-sub")
+                .subscribe();
+        for (int i = 0; i < NUM_MESSAGES; i++) {
+            Message<String> message = consumer.receive(10, TimeUnit.SECONDS);
+            assertNotNull(message, "Message " + i + " was lost while scaling the cluster");
+            assertEquals(message.getValue(), "message-" + i);
+            consumer.acknowledge(message);
+        }
+    }
+
+}
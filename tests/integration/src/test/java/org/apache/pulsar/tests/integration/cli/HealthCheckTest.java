@@ -31,6 +31,7 @@ import org.apache.pulsar.tests.integration.docker.ContainerExecException;
 import org.apache.pulsar.tests.integration.docker.ContainerExecResult;
 
 import org.apache.pulsar.tests.integration.topologies.PulsarCluster;
+import org.apache.pulsar.tests.integration.topologies.PulsarClusterPool;
 import org.apache.pulsar.tests.integration.topologies.PulsarClusterSpec;
 
 import org.slf4j.Logger;
@@ -54,18 +55,21 @@ public class HealthCheckTest {
         .numFunctionWorkers(0)
         .enablePrestoWorker(false).build();
 
+    private PulsarClusterPool.Lease clusterLease = null;
     private PulsarCluster pulsarCluster = null;
 
     @BeforeMethod
     public void setupCluster() throws Exception {
-        pulsarCluster = PulsarCluster.forSpec(spec);
-        pulsarCluster.start();
+        // the tests suspend zookeeper and bookies, so the cluster can't be returned to the pool
+        clusterLease = PulsarClusterPool.getInstance().leaseExclusive(spec);
+        pulsarCluster = clusterLease.getCluster();
     }
 
     @AfterMethod
     public void tearDownCluster() {
-        if (pulsarCluster != null) {
-            pulsarCluster.stop();
+        if (clusterLease != null) {
+            clusterLease.close();
+            clusterLease = null;
             pulsarCluster = null;
         }
     }
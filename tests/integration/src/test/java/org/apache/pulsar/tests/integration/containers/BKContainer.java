@@ -18,15 +18,112 @@
  */
 package org.apache.pulsar.tests.integration.containers;
 
+import static java.time.temporal.ChronoUnit.SECONDS;
+
+import com.github.dockerjava.api.model.Bind;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.Volume;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.wait.strategy.WaitStrategy;
+
 /**
  * A pulsar container that runs bookkeeper.
  */
+@Slf4j
 public class BKContainer extends PulsarContainer<BKContainer> {
 
     public static final String NAME = "bookie";
 
+    /**
+     * Directory of the journal and of the ledgers of the bookie.
+     */
+    public static final String DATA_DIR = "/pulsar/data/bookkeeper";
+
+    private BookieStorageMode storageMode = BookieStorageMode.OVERLAY;
+    private String volumeName;
+
     public BKContainer(String clusterName, String hostName) {
         super(
             clusterName, hostName, hostName, "bin/run-bookie.sh", BOOKIE_PORT, INVALID_PORT);
     }
+
+    @Override
+    protected WaitStrategy createWaitStrategy() {
+        String zkServers = getEnvMap().get("zkServers");
+        if (null == zkServers || !"true".equals(getEnvMap().get("useHostNameAsBookieID"))) {
+            // the bookie id isn't known up front
+            return super.createWaitStrategy();
+        }
+        return new BookieReadinessWaitStrategy(zkServers, getHostname() + ":" + BOOKIE_PORT)
+            .withStartupTimeout(Duration.of(300, SECONDS));
+    }
+
+    /**
+     * Set where the bookie stores its journal and ledgers.
+     *
+     * @param storageMode the storage mode of the bookie.
+     * @return this container.
+     */
+    public BKContainer withStorageMode(BookieStorageMode storageMode) {
+        this.storageMode = storageMode;
+        switch (storageMode) {
+            case TMPFS:
+                withTmpFs(Collections.singletonMap(DATA_DIR, "rw"));
+                disableJournalSync();
+                break;
+            case VOLUME:
+                volumeName = getContainerName() + "-data";
+                withCreateContainerCmdModifier(createContainerCmd ->
+                        addBind(createContainerCmd.getHostConfig(), new Bind(volumeName, new Volume(DATA_DIR))));
+                withEnv("journalSyncData", "true");
+                break;
+            default:
+                disableJournalSync();
+                break;
+        }
+        return this;
+    }
+
+    public BookieStorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    private void disableJournalSync() {
+        // Disable fsyncs for tests since they're slow within the containers
+        withEnv("journalSyncData", "false");
+        withEnv("journalMaxGroupWaitMSec", "0");
+    }
+
+    private static void addBind(HostConfig hostConfig, Bind bind) {
+        // keep the binds testcontainers configured, e.g. the class path mappings
+        List<Bind> binds = new ArrayList<>();
+        if (null != hostConfig.getBinds()) {
+            binds.addAll(Arrays.asList(hostConfig.getBinds()));
+        }
+        binds.add(bind);
+        hostConfig.withBinds(binds);
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        if (null != volumeName) {
+            try {
+                DockerClientFactory.instance().client().removeVolumeCmd(volumeName).exec();
+            } catch (Exception e) {
+                log.warn("Failed to remove volume {} of bookie {}", volumeName, getContainerName(), e);
+            }
+        }
+    }
+
+    @Override
+    protected String getServiceLogFile() {
+        return "/var/log/pulsar/bookie.log";
+    }
 }
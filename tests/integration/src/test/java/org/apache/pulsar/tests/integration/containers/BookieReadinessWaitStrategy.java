@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.containers;
+
+import org.apache.pulsar.tests.integration.docker.ContainerExecException;
+import org.apache.pulsar.tests.integration.utils.DockerUtils;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.wait.strategy.WaitStrategyTarget;
+
+/**
+ * Wait for a bookie to be registered as writable in zookeeper.
+ *
+ * <p>The registration is checked from within the container with `watch-znode.py`, which is
+ * much lighter than starting the bookkeeper shell for every check.
+ */
+class BookieReadinessWaitStrategy extends ReadinessWaitStrategy {
+
+    private static final String AVAILABLE_BOOKIES_PATH = "/ledgers/available/";
+
+    private final String zkServers;
+    private final String bookieId;
+
+    BookieReadinessWaitStrategy(String zkServers, String bookieId) {
+        this.zkServers = zkServers;
+        this.bookieId = bookieId;
+    }
+
+    @Override
+    protected String getDescription() {
+        return "a writable bookie";
+    }
+
+    @Override
+    protected boolean isReady(WaitStrategyTarget target) throws Exception {
+        try {
+            DockerUtils.runCommand(DockerClientFactory.instance().client(), target.getContainerId(),
+                    "bin/watch-znode.py", "-z", zkServers, "-p", AVAILABLE_BOOKIES_PATH + bookieId, "-e");
+            return true;
+        } catch (ContainerExecException e) {
+            // the znode doesn't exist yet
+            return false;
+        }
+    }
+}
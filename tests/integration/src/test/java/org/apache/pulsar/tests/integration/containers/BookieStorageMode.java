@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.containers;
+
+/**
+ * Where a bookie stores its journal and ledgers.
+ */
+public enum BookieStorageMode {
+
+    /**
+     * The writable layer of the container, with fsyncs of the journal disabled since they're
+     * slow and noisy on overlay filesystems.
+     */
+    OVERLAY,
+
+    /**
+     * A tmpfs mount, the fastest storage, to measure the ceiling of the brokers. Nothing is
+     * durable, fsyncs of the journal are disabled.
+     */
+    TMPFS,
+
+    /**
+     * A named docker volume on the disk of the host, with fsyncs of the journal enabled,
+     * to measure the latency of durable writes. The volume is removed with the bookie.
+     */
+    VOLUME
+}
@@ -18,7 +18,10 @@
  */
 package org.apache.pulsar.tests.integration.containers;
 
-import org.apache.pulsar.tests.integration.utils.DockerUtils;
+import static java.time.temporal.ChronoUnit.SECONDS;
+
+import java.time.Duration;
+import org.testcontainers.containers.wait.strategy.WaitStrategy;
 
 /**
  * A pulsar container that runs bookkeeper.
@@ -32,10 +35,19 @@ public class BrokerContainer extends PulsarContainer<BrokerContainer> {
             clusterName, hostName, hostName, "bin/run-broker.sh", BROKER_PORT, BROKER_HTTP_PORT);
     }
 
+    @Override
+    protected WaitStrategy createWaitStrategy() {
+        return new BrokerReadinessWaitStrategy(clusterName, getHostname(), getLogIndex())
+            .withStartupTimeout(Duration.of(300, SECONDS));
+    }
+
     @Override
     protected void afterStart() {
         this.tailContainerLog();
-        DockerUtils.runCommandAsync(this.dockerClient, this.getContainerId(),
-                "tail", "-f", "/var/log/pulsar/broker.log");
+    }
+
+    @Override
+    protected String getServiceLogFile() {
+        return "/var/log/pulsar/broker.log";
     }
 }
@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.containers;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.testcontainers.containers.wait.strategy.WaitStrategyTarget;
+
+/**
+ * Wait for a broker to pass its health check and to be registered as an active broker of its
+ * cluster, i.e. to be able to own bundles.
+ *
+ * <p>The admin api of a broker with authentication enabled can't be queried, such a broker is
+ * ready once its binary port accepts connections and it logged that its messaging service is
+ * ready.
+ */
+@Slf4j
+class BrokerReadinessWaitStrategy extends ReadinessWaitStrategy {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String READY_LOG_MESSAGE = "messaging service is ready";
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+
+    private final String clusterName;
+    private final String hostname;
+    private final LogIndex logIndex;
+    private boolean authenticationRequired = false;
+
+    BrokerReadinessWaitStrategy(String clusterName, String hostname, LogIndex logIndex) {
+        this.clusterName = clusterName;
+        this.hostname = hostname;
+        this.logIndex = logIndex;
+    }
+
+    @Override
+    protected String getDescription() {
+        return "healthy and an active broker of cluster " + clusterName;
+    }
+
+    @Override
+    protected boolean isReady(WaitStrategyTarget target) throws Exception {
+        HttpResponse health = httpGet(target, PulsarContainer.BROKER_HTTP_PORT, "/admin/v2/brokers/health");
+        if (health.getStatus() == 401 || health.getStatus() == 403) {
+            if (!authenticationRequired) {
+                log.info("Broker {} requires authentication, waiting for its binary port and its ready log", hostname);
+                authenticationRequired = true;
+            }
+            return isBinaryPortOpen(target) && !logIndex.find(event ->
+                    null != event.getMessage() && event.getMessage().contains(READY_LOG_MESSAGE)).isEmpty();
+        }
+        // images older than the health check answer 404, fall back to the active brokers
+        if (health.getStatus() != 200 && health.getStatus() != 404) {
+            return false;
+        }
+        HttpResponse activeBrokers = httpGet(target, PulsarContainer.BROKER_HTTP_PORT,
+                "/admin/v2/brokers/" + clusterName);
+        if (activeBrokers.getStatus() != 200) {
+            return false;
+        }
+        List<String> brokers = MAPPER.readValue(activeBrokers.getBody(), new TypeReference<List<String>>() {});
+        return brokers.stream().anyMatch(broker -> broker.startsWith(hostname + ":"));
+    }
+
+    private static boolean isBinaryPortOpen(WaitStrategyTarget target) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(target.getContainerIpAddress(),
+                    target.getMappedPort(PulsarContainer.BROKER_PORT)), CONNECT_TIMEOUT_MS);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -34,4 +34,9 @@ public class CSContainer extends ZKContainer<CSContainer> {
             CS_PORT,
             INVALID_PORT);
     }
+
+    @Override
+    protected String getServiceLogFile() {
+        return "/var/log/pulsar/global-zk.log";
+    }
 }
@@ -18,20 +18,34 @@
  */
 package org.apache.pulsar.tests.integration.containers;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import com.github.dockerjava.api.DockerClient;
-import com.github.dockerjava.api.command.LogContainerCmd;
-import com.github.dockerjava.api.model.Frame;
-import com.github.dockerjava.core.command.LogContainerResultCallback;
-import java.util.Base64;
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.google.common.base.CharMatcher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.tests.integration.docker.ContainerExecException;
 import org.apache.pulsar.tests.integration.docker.ContainerExecResult;
+import org.apache.pulsar.tests.integration.docker.ContainerFile;
+import org.apache.pulsar.tests.integration.utils.ArtifactCollector;
 import org.apache.pulsar.tests.integration.utils.DockerUtils;
+import org.apache.pulsar.tests.integration.utils.ExecOptions;
 import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.OutputFrame;
 
 /**
  * A base container provides chaos capability.
@@ -40,6 +54,15 @@ import org.testcontainers.containers.GenericContainer;
 public class ChaosContainer<SelfT extends ChaosContainer<SelfT>> extends GenericContainer<SelfT> {
 
     protected final String clusterName;
+    // the name of the container and the container id it was looked up for, the id changes on restarts
+    private String dockerContainerName;
+    private String dockerContainerNameId;
+    // the content hashes of the files copied by putFileIfChanged, keyed by container id and path
+    private final Map<String, String> uploadedFileHashes = new ConcurrentHashMap<>();
+    private String artifactsContainerId;
+    private final LogIndex logIndex = new LogIndex();
+    private volatile boolean tailLog = false;
+    private CompletableFuture<Void> artifactsCollection;
 
     protected ChaosContainer(String clusterName, String image) {
         super(image);
@@ -47,15 +70,34 @@ public class ChaosContainer<SelfT extends ChaosContainer<SelfT>> extends Generic
     }
 
     protected void beforeStop() {
+        collectArtifacts().join();
+    }
+
+    /**
+     * Returns the directories of the container collected with its log when it is stopped.
+     *
+     * @return the paths of the directories.
+     */
+    protected List<String> getArtifactDirs() {
+        return new ArrayList<>();
+    }
+
+    /**
+     * Collect the log and the artifact directories of the container, once per container id.
+     * A cluster collects all its containers concurrently before stopping them.
+     *
+     * @return a future completed once the artifacts are collected.
+     */
+    public synchronized CompletableFuture<Void> collectArtifacts() {
         if (null == containerId) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
-
-        // dump the container log
-        DockerUtils.dumpContainerLogToTarget(
-            getDockerClient(),
-            containerId
-        );
+        if (!containerId.equals(artifactsContainerId)) {
+            artifactsContainerId = containerId;
+            artifactsCollection = ArtifactCollector.getInstance().collect(getDockerClient(), containerId,
+                    getCachedContainerName(containerId), getArtifactDirs());
+        }
+        return artifactsCollection;
     }
 
     @Override
@@ -64,61 +106,151 @@ public class ChaosContainer<SelfT extends ChaosContainer<SelfT>> extends Generic
         super.stop();
     }
 
-    public void tailContainerLog() {
-        CompletableFuture.runAsync(() -> {
-            while (null == containerId) {
-                try {
-                    TimeUnit.MILLISECONDS.sleep(100);
-                } catch (InterruptedException e) {
-                    return;
-                }
-            }
+    /**
+     * Returns the file the service of the container logs to, or null if it logs to the container output.
+     *
+     * @return the path of the service log file in the container.
+     */
+    protected String getServiceLogFile() {
+        return null;
+    }
 
-            LogContainerCmd logContainerCmd = this.dockerClient.logContainerCmd(containerId);
-            logContainerCmd.withStdOut(true).withStdErr(true).withFollowStream(true);
-            logContainerCmd.exec(new LogContainerResultCallback() {
-                @Override
-                public void onNext(Frame item) {
-                    log.info(new String(item.getPayload(), UTF_8));
+    @Override
+    protected void containerIsStarting(InspectContainerResponse containerInfo) {
+        super.containerIsStarting(containerInfo);
+        startLogCapture();
+    }
+
+    /**
+     * Start the log pipeline of the container, which feeds each line of the service log into the
+     * log index. The lines are only logged if {@link #tailContainerLog()} was called.
+     */
+    private void startLogCapture() {
+        String logFile = getServiceLogFile();
+        if (null == logFile) {
+            followOutput(frame -> {
+                if (frame.getType() != OutputFrame.OutputType.END) {
+                    onLogLine(CharMatcher.anyOf("\r\n").trimTrailingFrom(frame.getUtf8String()));
                 }
             });
-        });
+        } else {
+            // the tail runs as long as the container, it is not an exec to measure or to check the exit code of
+            String dockerId = getContainerId();
+            DockerUtils.followCommandAsync(getDockerClient(), dockerId, getCachedContainerName(dockerId),
+                    ExecOptions.builder()
+                            .maxRetainedBytes(0)
+                            .maxLoggedLinesPerSecond(0)
+                            .lineConsumer((stream, line) -> onLogLine(line))
+                            .build(), "tail", "-F", "-n", "+1", logFile);
+        }
     }
 
-    public String getContainerLog() {
-        StringBuilder sb = new StringBuilder();
+    private void onLogLine(String line) {
+        logIndex.append(line);
+        if (tailLog) {
+            log.info("[{}] {}", getCachedContainerName(containerId), line);
+        }
+    }
 
-        LogContainerCmd logContainerCmd = this.dockerClient.logContainerCmd(containerId);
-        logContainerCmd.withStdOut(true).withStdErr(true);
-        try {
-            logContainerCmd.exec(new LogContainerResultCallback() {
-                @Override
-                public void onNext(Frame item) {
-                    sb.append(new String(item.getPayload(), UTF_8));
-                }
-            }).awaitCompletion();
-        } catch (InterruptedException e) {
+    /**
+     * Log the lines of the service log of the container as they are captured.
+     */
+    public void tailContainerLog() {
+        tailLog = true;
+    }
 
-        }
-        return sb.toString();
+    public LogIndex getLogIndex() {
+        return logIndex;
+    }
+
+    /**
+     * Wait for an event of the service log of the container.
+     *
+     * @param predicate the predicate of the event.
+     * @param timeout how long to wait for the event.
+     * @return the first matching event.
+     * @throws TimeoutException if no event matched in time.
+     */
+    public LogEvent awaitLogEvent(Predicate<LogEvent> predicate, Duration timeout)
+            throws InterruptedException, TimeoutException {
+        return logIndex.awaitLogEvent(predicate, timeout);
     }
 
     public void putFile(String path, byte[] contents) throws Exception {
-        String base64contents = Base64.getEncoder().encodeToString(contents);
-        String cmd = String.format("echo %s | base64 -d > %s", base64contents, path);
-        execCmd("bash", "-c", cmd);
+        putFiles(Collections.singletonList(ContainerFile.of(path, contents)));
+    }
+
+    public void putFile(String path, Path source) throws Exception {
+        putFiles(Collections.singletonList(ContainerFile.of(path, source)));
+    }
+
+    public void putFile(String path, InputStream contents, long size) throws Exception {
+        putFiles(Collections.singletonList(ContainerFile.of(path, contents, size)));
+    }
+
+    /**
+     * Copy files into the container in a single archive.
+     *
+     * @param files the files to copy.
+     */
+    public void putFiles(Collection<ContainerFile> files) throws Exception {
+        DockerUtils.copyFilesToContainer(getDockerClient(), getContainerId(), files);
+    }
+
+    /**
+     * Copy a file from the host into the container, unless the same content was already copied to
+     * the same path of this container, e.g. a function jar or a connector nar shared by several tests.
+     *
+     * @param path the path of the file in the container.
+     * @param source the file on the host.
+     * @return true if the file was copied, false if the container already had it.
+     */
+    public boolean putFileIfChanged(String path, Path source) throws Exception {
+        String key = getContainerId() + ":" + path;
+        String hash = Files.asByteSource(source.toFile()).hash(Hashing.sha256()).toString();
+        if (hash.equals(uploadedFileHashes.get(key))) {
+            log.info("Skip copying {} to {}, the container already has it", source, path);
+            return false;
+        }
+        putFile(path, source);
+        uploadedFileHashes.put(key, hash);
+        return true;
     }
 
     public ContainerExecResult execCmd(String... commands) throws Exception {
-        DockerClient client = this.getDockerClient();
-        String dockerId = this.getContainerId();
-        return DockerUtils.runCommand(client, dockerId, commands);
+        return execCmd(ExecOptions.DEFAULT, commands);
     }
 
     public CompletableFuture<ContainerExecResult> execCmdAsync(String... commands) throws Exception {
+        return execCmdAsync(ExecOptions.DEFAULT, commands);
+    }
+
+    public ContainerExecResult execCmd(ExecOptions options, String... commands) throws Exception {
+        try {
+            return execCmdAsync(options, commands).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ContainerExecException) {
+                throw (ContainerExecException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public CompletableFuture<ContainerExecResult> execCmdAsync(ExecOptions options, String... commands) {
         DockerClient client = this.getDockerClient();
         String dockerId = this.getContainerId();
-        return DockerUtils.runCommandAsync(client, dockerId, commands);
+        return DockerUtils.runCommandAsync(client, dockerId, getCachedContainerName(dockerId), options, commands);
+    }
+
+    /**
+     * Returns the name of the container, which is looked up once per container id rather than on every exec.
+     */
+    private synchronized String getCachedContainerName(String dockerId) {
+        if (!dockerId.equals(dockerContainerNameId)) {
+            dockerContainerName = DockerUtils.getContainerName(getDockerClient(), dockerId);
+            dockerContainerNameId = dockerId;
+        }
+        return dockerContainerName;
     }
 
     @Override
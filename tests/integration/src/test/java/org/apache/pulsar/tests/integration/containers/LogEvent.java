@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.containers;
+
+import java.time.LocalTime;
+import lombok.Data;
+
+/**
+ * A line of a container log, parsed according to the pulsar log pattern
+ * `%d{HH:mm:ss.SSS} [%t] %-5level %logger{36} - %msg`.
+ *
+ * <p>Lines that don't match the pattern, e.g. the lines of a stack trace, are kept as events
+ * with only a message.
+ */
+@Data
+public class LogEvent {
+
+    /**
+     * The position of the event in the log of its container, starting at 1.
+     */
+    private final long sequence;
+    /**
+     * The time of the event, null if the line doesn't match the log pattern.
+     */
+    private final LocalTime time;
+    private final String thread;
+    private final String level;
+    private final String logger;
+    private final String message;
+
+    public boolean isParsed() {
+        return null != level;
+    }
+
+    public boolean isLevel(String level) {
+        return level.equals(this.level);
+    }
+
+    /**
+     * Returns whether the logger of the event is, or ends with, the given name. The logger of a
+     * pulsar log line is abbreviated to 36 characters, so its package might be shortened.
+     */
+    public boolean isLogger(String name) {
+        return null != logger && (logger.equals(name) || logger.endsWith("." + name));
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.containers;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A bounded in-memory index of the log events of a container.
+ *
+ * <p>The index keeps the last {@link #DEFAULT_CAPACITY} events, with messages truncated to
+ * {@link #MAX_MESSAGE_LENGTH} characters and thread and logger names shared between events.
+ * Tests can query it or wait for an event instead of sleeping or re-reading the whole log.
+ */
+public class LogIndex {
+
+    public static final int DEFAULT_CAPACITY = 20000;
+    public static final int MAX_MESSAGE_LENGTH = 2048;
+
+    private static final Pattern LOG_LINE = Pattern.compile(
+            "^(\\d{2}:\\d{2}:\\d{2}\\.\\d{3}) \\[(.*?)\\] (TRACE|DEBUG|INFO|WARN|ERROR|FATAL)\\s+(\\S+) - (.*)$");
+
+    private final int capacity;
+    private final ArrayDeque<LogEvent> events = new ArrayDeque<>();
+    private final Map<String, String> names = new HashMap<>();
+    private final Map<String, Long> levelCounts = new HashMap<>();
+    private long lastSequence = 0;
+
+    public LogIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LogIndex(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Index a line of the log.
+     *
+     * @param line the line, without its line terminator.
+     * @return the indexed event.
+     */
+    public synchronized LogEvent append(String line) {
+        LogEvent event;
+        Matcher matcher = LOG_LINE.matcher(line);
+        if (matcher.matches()) {
+            event = new LogEvent(++lastSequence,
+                    LocalTime.parse(matcher.group(1)),
+                    intern(matcher.group(2)),
+                    intern(matcher.group(3)),
+                    intern(matcher.group(4)),
+                    truncate(matcher.group(5)));
+            levelCounts.merge(event.getLevel(), 1L, Long::sum);
+        } else {
+            event = new LogEvent(++lastSequence, null, null, null, null, truncate(line));
+        }
+        events.addLast(event);
+        if (events.size() > capacity) {
+            events.removeFirst();
+        }
+        notifyAll();
+        return event;
+    }
+
+    /**
+     * Returns the sequence of the last indexed event, to wait for events logged after it.
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns the number of events of a level logged so far, including the events evicted from the index.
+     */
+    public synchronized long getCount(String level) {
+        return levelCounts.getOrDefault(level, 0L);
+    }
+
+    public synchronized List<LogEvent> find(Predicate<LogEvent> predicate) {
+        List<LogEvent> found = new ArrayList<>();
+        for (LogEvent event : events) {
+            if (predicate.test(event)) {
+                found.add(event);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Wait for an event matching the predicate, including the events already in the index.
+     *
+     * @param predicate the predicate of the event.
+     * @param timeout how long to wait for the event.
+     * @return the first matching event.
+     * @throws TimeoutException if no event matched in time.
+     */
+    public LogEvent awaitLogEvent(Predicate<LogEvent> predicate, Duration timeout)
+            throws InterruptedException, TimeoutException {
+        return awaitLogEvent(predicate, 0, timeout);
+    }
+
+    /**
+     * Wait for an event matching the predicate that comes after the given sequence, e.g. the
+     * {@link #getLastSequence()} before an action whose outcome is logged.
+     *
+     * @param predicate the predicate of the event.
+     * @param afterSequence the sequence the event must come after.
+     * @param timeout how long to wait for the event.
+     * @return the first matching event.
+     * @throws TimeoutException if no event matched in time.
+     */
+    public synchronized LogEvent awaitLogEvent(Predicate<LogEvent> predicate, long afterSequence, Duration timeout)
+            throws InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long checkedSequence = afterSequence;
+        while (true) {
+            // only the events not checked yet are tested, they are at the end of the index
+            List<LogEvent> newEvents = new ArrayList<>();
+            Iterator<LogEvent> iterator = events.descendingIterator();
+            while (iterator.hasNext()) {
+                LogEvent event = iterator.next();
+                if (event.getSequence() <= checkedSequence) {
+                    break;
+                }
+                newEvents.add(event);
+            }
+            for (int i = newEvents.size() - 1; i >= 0; i--) {
+                if (predicate.test(newEvents.get(i))) {
+                    return newEvents.get(i);
+                }
+            }
+            checkedSequence = lastSequence;
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                throw new TimeoutException("No log event matched in " + timeout);
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+        }
+    }
+
+    private String intern(String name) {
+        if (names.size() >= capacity) {
+            names.clear();
+        }
+        return names.computeIfAbsent(name, n -> n);
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message;
+    }
+}
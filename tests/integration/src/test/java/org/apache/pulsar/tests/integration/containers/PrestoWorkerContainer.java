@@ -18,7 +18,7 @@
  */
 package org.apache.pulsar.tests.integration.containers;
 
-import org.apache.pulsar.tests.integration.utils.DockerUtils;
+import java.util.List;
 
 /**
  * A pulsar container that runs the presto worker
@@ -41,18 +41,18 @@ public class PrestoWorkerContainer extends PulsarContainer<PrestoWorkerContainer
     }
 
     @Override
-    protected void beforeStop() {
-        super.beforeStop();
-        if (null != containerId) {
-            DockerUtils.dumpContainerDirToTargetCompressed(
-                    getDockerClient(),
-                    containerId,
-                    "/pulsar/lib/presto/var/log"
-            );
-        }
+    protected List<String> getArtifactDirs() {
+        List<String> dirs = super.getArtifactDirs();
+        dirs.add("/pulsar/lib/presto/var/log");
+        return dirs;
     }
 
     public String getUrl() {
         return String.format("%s:%s",  getContainerIpAddress(), getMappedPort(PrestoWorkerContainer.PRESTO_HTTP_PORT));
     }
+
+    @Override
+    protected String getServiceLogFile() {
+        return "/var/log/pulsar/presto_worker.log";
+    }
 }
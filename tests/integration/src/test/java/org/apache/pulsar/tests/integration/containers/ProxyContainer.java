@@ -18,6 +18,15 @@
  */
 package org.apache.pulsar.tests.integration.containers;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * A pulsar container that runs bookkeeper.
  */
@@ -37,4 +46,55 @@ public class ProxyContainer extends PulsarContainer<ProxyContainer> {
     public String getHttpServiceUrl() {
         return "http://" + getContainerIpAddress() + ":" + getMappedPort(BROKER_HTTP_PORT);
     }
+
+    /**
+     * Returns the connection and byte counters of this proxy.
+     *
+     * @return the current counters of this proxy.
+     */
+    public ProxyStats getProxyStats() throws IOException {
+        Map<String, Double> metrics = new HashMap<>();
+        URL url = new URL(getHttpServiceUrl() + "/metrics");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                // `name{labels} value [timestamp]`, values of the same metric are summed up across labels
+                int nameEnd = line.indexOf('{') > 0 ? line.indexOf('{') : line.indexOf(' ');
+                int valueStart = line.lastIndexOf('}') > 0 ? line.lastIndexOf('}') + 1 : nameEnd;
+                if (nameEnd <= 0) {
+                    continue;
+                }
+                String[] values = line.substring(valueStart).trim().split(" ");
+                try {
+                    metrics.merge(line.substring(0, nameEnd), Double.parseDouble(values[0]), Double::sum);
+                } catch (NumberFormatException e) {
+                    // skip metrics that don't have a numeric value
+                }
+            }
+        }
+        return ProxyStats.of(
+            getContainerName(),
+            getMetric(metrics, "pulsar_proxy_active_connections"),
+            getMetric(metrics, "pulsar_proxy_new_connections"),
+            getMetric(metrics, "pulsar_proxy_rejected_connections"),
+            getMetric(metrics, "pulsar_proxy_binary_ops"),
+            getMetric(metrics, "pulsar_proxy_binary_bytes"));
+    }
+
+    private static long getMetric(Map<String, Double> metrics, String name) {
+        Double value = metrics.get(name);
+        if (value == null) {
+            // counters are exported with a `_total` suffix by newer prometheus clients
+            value = metrics.getOrDefault(name + "_total", 0.0);
+        }
+        return value.longValue();
+    }
+
+    @Override
+    protected String getServiceLogFile() {
+        return "/var/log/pulsar/proxy.log";
+    }
 }
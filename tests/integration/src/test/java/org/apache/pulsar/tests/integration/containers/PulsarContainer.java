@@ -20,12 +20,15 @@ package org.apache.pulsar.tests.integration.containers;
 
 import static java.time.temporal.ChronoUnit.SECONDS;
 
+import com.github.dockerjava.api.command.InspectContainerResponse;
 import java.time.Duration;
+import java.util.List;
 import java.util.Objects;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pulsar.tests.integration.utils.DockerUtils;
+import org.testcontainers.containers.output.OutputFrame;
 import org.testcontainers.containers.wait.strategy.HostPortWaitStrategy;
 import org.testcontainers.containers.wait.strategy.HttpWaitStrategy;
+import org.testcontainers.containers.wait.strategy.WaitStrategy;
 
 /**
  * Abstract Test Container for Pulsar.
@@ -40,6 +43,12 @@ public abstract class PulsarContainer<SelfT extends PulsarContainer<SelfT>> exte
     public static final int BROKER_PORT = 6650;
     public static final int BROKER_HTTP_PORT = 8080;
 
+    /**
+     * Environment variable with the jvm memory options of the service, supervisord passes it to
+     * the service as `PULSAR_MEM`. The tools run in the container keep their own defaults.
+     */
+    public static final String SERVICE_MEM_ENV = "PULSAR_SERVICE_MEM";
+
     public static final String DEFAULT_IMAGE_NAME = "apachepulsar/pulsar-test-latest-version:latest";
     public static final String PULSAR_2_5_IMAGE_NAME = "apachepulsar/pulsar:2.5.0";
     public static final String PULSAR_2_4_IMAGE_NAME = "apachepulsar/pulsar:2.4.0";
@@ -54,6 +63,9 @@ public abstract class PulsarContainer<SelfT extends PulsarContainer<SelfT>> exte
     private final int servicePort;
     private final int httpPort;
     private final String httpPath;
+    private ResourceProfile resourceProfile;
+    private WaitStrategy customWaitStrategy;
+    private final StartupTimings startupTimings = new StartupTimings();
 
     public PulsarContainer(String clusterName,
                            String hostname,
@@ -78,6 +90,7 @@ public abstract class PulsarContainer<SelfT extends PulsarContainer<SelfT>> exte
         this.servicePort = servicePort;
         this.httpPort = httpPort;
         this.httpPath = httpPath;
+        withLogConsumer(this::recordFirstLogLine);
     }
 
     public PulsarContainer(String clusterName,
@@ -95,18 +108,14 @@ public abstract class PulsarContainer<SelfT extends PulsarContainer<SelfT>> exte
         this.servicePort = servicePort;
         this.httpPort = httpPort;
         this.httpPath = httpPath;
+        withLogConsumer(this::recordFirstLogLine);
     }
 
     @Override
-    protected void beforeStop() {
-        super.beforeStop();
-        if (null != containerId) {
-            DockerUtils.dumpContainerDirToTargetCompressed(
-                getDockerClient(),
-                containerId,
-                "/var/log/pulsar"
-            );
-        }
+    protected List<String> getArtifactDirs() {
+        List<String> dirs = super.getArtifactDirs();
+        dirs.add("/var/log/pulsar");
+        return dirs;
     }
 
     @Override
@@ -124,29 +133,102 @@ public abstract class PulsarContainer<SelfT extends PulsarContainer<SelfT>> exte
         }
     }
 
-    protected void beforeStart() {}
+    /**
+     * Limit the resources of the container and size the jvm of its service.
+     *
+     * @param resourceProfile the resources of the container, null for no limits.
+     * @return this container.
+     */
+    public SelfT withResourceProfile(ResourceProfile resourceProfile) {
+        this.resourceProfile = resourceProfile;
+        String pulsarMem = null == resourceProfile ? null : resourceProfile.getPulsarMem();
+        if (null != pulsarMem) {
+            withEnv(SERVICE_MEM_ENV, pulsarMem);
+        }
+        return self();
+    }
 
-    protected void afterStart() {}
+    public ResourceProfile getResourceProfile() {
+        return resourceProfile;
+    }
+
+    /**
+     * Returns the timestamps of the startup phases of the last start of the container.
+     *
+     * @return the startup timings of the container.
+     */
+    public StartupTimings getStartupTimings() {
+        return startupTimings;
+    }
+
+    private void recordFirstLogLine(OutputFrame frame) {
+        if (frame.getType() != OutputFrame.OutputType.END) {
+            startupTimings.record(StartupTimings.FIRST_LOG_LINE);
+        }
+    }
 
     @Override
-    public void start() {
+    protected void containerIsCreated(String containerId) {
+        startupTimings.record(StartupTimings.CREATED);
+        super.containerIsCreated(containerId);
+    }
+
+    @Override
+    protected void containerIsStarting(InspectContainerResponse containerInfo) {
+        startupTimings.record(StartupTimings.STARTED);
+        super.containerIsStarting(containerInfo);
+    }
+
+    /**
+     * Returns the strategy to wait for the service of the container to be ready, unless another
+     * strategy is set with {@link #waitingFor(WaitStrategy)}.
+     *
+     * <p>By default, the container is ready once its http path answers, or once its ports are open.
+     *
+     * @return the wait strategy of the container.
+     */
+    protected WaitStrategy createWaitStrategy() {
         if (httpPort > 0 && servicePort < 0) {
-            this.waitStrategy = new HttpWaitStrategy()
+            return new HttpWaitStrategy()
                 .forPort(httpPort)
                 .forStatusCode(200)
                 .forPath(httpPath)
                 .withStartupTimeout(Duration.of(300, SECONDS));
-        } else if (httpPort > 0 || servicePort > 0) {
-            this.waitStrategy = new HostPortWaitStrategy()
-                .withStartupTimeout(Duration.of(300, SECONDS));
         }
+        return new HostPortWaitStrategy()
+            .withStartupTimeout(Duration.of(300, SECONDS));
+    }
+
+    @Override
+    public SelfT waitingFor(WaitStrategy waitStrategy) {
+        this.customWaitStrategy = waitStrategy;
+        return super.waitingFor(waitStrategy);
+    }
+
+    protected String getHostname() {
+        return hostname;
+    }
+
+    protected void beforeStart() {}
+
+    protected void afterStart() {}
+
+    @Override
+    public void start() {
+        startupTimings.reset();
+        startupTimings.record(StartupTimings.START);
+        WaitStrategy readinessStrategy = null != customWaitStrategy ? customWaitStrategy : createWaitStrategy();
         this.withCreateContainerCmdModifier(createContainerCmd -> {
             createContainerCmd.withHostName(hostname);
             createContainerCmd.withName(getContainerName());
             createContainerCmd.withEntrypoint(serviceEntryPoint);
+            if (null != resourceProfile) {
+                resourceProfile.applyTo(createContainerCmd.getHostConfig());
+            }
         });
 
         beforeStart();
+        this.waitStrategy = new TimedWaitStrategy(readinessStrategy, startupTimings);
         super.start();
         afterStart();
         log.info("Start pulsar service {} at container {}", serviceName, containerName);
@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.containers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import lombok.Data;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.testcontainers.containers.ContainerLaunchException;
+import org.testcontainers.containers.wait.strategy.AbstractWaitStrategy;
+import org.testcontainers.containers.wait.strategy.WaitStrategyTarget;
+
+/**
+ * A wait strategy polling a readiness check of the service of a container, with exponential
+ * backoff between the checks.
+ *
+ * <p>Unlike waiting for a port, the check tells whether the service is usable, e.g. whether a
+ * broker can own bundles, so tests can use the service as soon as the container started.
+ */
+@Slf4j
+public abstract class ReadinessWaitStrategy extends AbstractWaitStrategy {
+
+    private static final long INITIAL_BACKOFF_MS = 50;
+    private static final long MAX_BACKOFF_MS = 2000;
+    private static final int HTTP_TIMEOUT_MS = 5000;
+
+    /**
+     * Time in millis it took for the last wait to pass, -1 if it didn't pass yet.
+     */
+    @Getter
+    private volatile long readyMillis = -1;
+
+    /**
+     * Number of checks of the last wait.
+     */
+    @Getter
+    private volatile int attempts;
+
+    /**
+     * Returns a description of the readiness, for logging.
+     */
+    protected abstract String getDescription();
+
+    /**
+     * Check once whether the service of the container is ready, failures count as not ready.
+     *
+     * @param target the container.
+     * @return true if the service is ready.
+     */
+    protected abstract boolean isReady(WaitStrategyTarget target) throws Exception;
+
+    @Override
+    protected void waitUntilReady() {
+        String containerName = waitStrategyTarget.getContainerInfo().getName();
+        long startTime = System.nanoTime();
+        long deadline = startTime + startupTimeout.toNanos();
+        long backoffMs = INITIAL_BACKOFF_MS;
+        Exception lastError = null;
+        readyMillis = -1;
+        attempts = 0;
+        while (true) {
+            attempts++;
+            try {
+                if (isReady(waitStrategyTarget)) {
+                    readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+                    log.info("Container {} is {} after {} ms and {} checks",
+                            containerName, getDescription(), readyMillis, attempts);
+                    return;
+                }
+            } catch (Exception e) {
+                lastError = e;
+            }
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs <= 0) {
+                throw new ContainerLaunchException("Timed out waiting for container " + containerName
+                        + " to be " + getDescription() + " after " + attempts + " checks", lastError);
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(Math.min(backoffMs, remainingMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ContainerLaunchException("Interrupted waiting for container " + containerName
+                        + " to be " + getDescription(), e);
+            }
+            backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+        }
+    }
+
+    /**
+     * Send a GET request to an http port of the container.
+     *
+     * @param target the container.
+     * @param port the exposed http port.
+     * @param path the path of the request.
+     * @return the status code and the body of the response.
+     */
+    protected static HttpResponse httpGet(WaitStrategyTarget target, int port, String path) throws IOException {
+        URL url = new URL("http://" + target.getContainerIpAddress() + ":" + target.getMappedPort(port) + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(HTTP_TIMEOUT_MS);
+        connection.setReadTimeout(HTTP_TIMEOUT_MS);
+        try {
+            int status = connection.getResponseCode();
+            InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            String body = null == stream ? "" : new String(ByteStreams.toByteArray(stream), UTF_8);
+            return HttpResponse.of(status, body);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Status code and body of an http response.
+     */
+    @Data(staticConstructor = "of")
+    protected static class HttpResponse {
+        private final int status;
+        private final String body;
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.containers;
+
+import com.github.dockerjava.api.model.HostConfig;
+import java.util.concurrent.TimeUnit;
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Resources granted to a pulsar container.
+ *
+ * <p>The cpu, memory and blkio limits are applied to the cgroup of the container, the heap and
+ * direct memory sizes to the jvm of the service. A limit of 0 leaves the resource unlimited, or
+ * to the default of the image for the jvm sizes.
+ */
+@Builder
+@Accessors(fluent = true)
+@Getter
+@ToString
+@EqualsAndHashCode
+public class ResourceProfile {
+
+    /**
+     * Returns the number of cpus of the container, it can be fractional.
+     *
+     * @return the number of cpus.
+     */
+    @Default
+    double cpus = 0;
+
+    /**
+     * Returns the memory of the container in MB, swap included.
+     *
+     * @return the memory of the container in MB.
+     */
+    @Default
+    long memoryMb = 0;
+
+    /**
+     * Returns the relative block io weight of the container, between 10 and 1000.
+     *
+     * @return the block io weight.
+     */
+    @Default
+    int blkioWeight = 0;
+
+    /**
+     * Returns the heap size of the jvm in MB.
+     *
+     * @return the heap size in MB.
+     */
+    @Default
+    long heapMb = 0;
+
+    /**
+     * Returns the max direct memory size of the jvm in MB.
+     *
+     * @return the max direct memory size in MB.
+     */
+    @Default
+    long directMemoryMb = 0;
+
+    void applyTo(HostConfig hostConfig) {
+        if (cpus > 0) {
+            hostConfig.withNanoCPUs((long) (cpus * TimeUnit.SECONDS.toNanos(1)));
+        }
+        if (memoryMb > 0) {
+            long memoryBytes = memoryMb * 1024 * 1024;
+            hostConfig.withMemory(memoryBytes);
+            hostConfig.withMemorySwap(memoryBytes);
+        }
+        if (blkioWeight > 0) {
+            hostConfig.withBlkioWeight(blkioWeight);
+        }
+    }
+
+    /**
+     * Returns the jvm memory options of the profile, or null to keep the defaults of the image.
+     */
+    String getPulsarMem() {
+        if (heapMb <= 0 && directMemoryMb <= 0) {
+            return null;
+        }
+        StringBuilder options = new StringBuilder();
+        if (heapMb > 0) {
+            options.append("-Xms").append(heapMb).append("m -Xmx").append(heapMb).append("m");
+        }
+        if (directMemoryMb > 0) {
+            if (options.length() > 0) {
+                options.append(' ');
+            }
+            options.append("-XX:MaxDirectMemorySize=").append(directMemoryMb).append("m");
+        }
+        return options.toString();
+    }
+}
@@ -22,6 +22,7 @@ import static java.time.temporal.ChronoUnit.SECONDS;
 
 import java.time.Duration;
 import org.testcontainers.containers.wait.strategy.HttpWaitStrategy;
+import org.testcontainers.containers.wait.strategy.WaitStrategy;
 
 /**
  * A pulsar container that runs standalone.
@@ -57,9 +58,9 @@ public class StandaloneContainer extends PulsarContainer<StandaloneContainer> {
     }
 
     @Override
-    protected void beforeStart() {
-        // update the wait strategy until public/default namespace is created
-        this.waitStrategy = new HttpWaitStrategy()
+    protected WaitStrategy createWaitStrategy() {
+        // wait until public/default namespace is created
+        return new HttpWaitStrategy()
                 .forPort(BROKER_HTTP_PORT)
                 .forStatusCode(200)
                 .forPath("/admin/v2/namespaces/public/default")
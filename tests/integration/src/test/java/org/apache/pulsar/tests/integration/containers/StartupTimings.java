@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.containers;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wall clock timestamps of the startup phases of a container.
+ *
+ * <p>The phases are recorded in order: {@link #START} when the start of the container is
+ * requested, {@link #CREATED} once docker created it (image pull included), {@link #STARTED}
+ * once docker started it, {@link #FIRST_LOG_LINE} when its entrypoint printed the first line,
+ * {@link #PORT_OPEN} once its exposed ports accept connections and {@link #READY} once its
+ * wait strategy passed. Only the first occurrence of a phase is kept.
+ */
+public class StartupTimings {
+
+    public static final String START = "start";
+    public static final String CREATED = "created";
+    public static final String STARTED = "started";
+    public static final String FIRST_LOG_LINE = "first-log-line";
+    public static final String PORT_OPEN = "port-open";
+    public static final String READY = "ready";
+
+    private final Map<String, Long> timestamps = new LinkedHashMap<>();
+
+    synchronized void reset() {
+        timestamps.clear();
+    }
+
+    synchronized void record(String phase) {
+        timestamps.putIfAbsent(phase, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the timestamp of a phase.
+     *
+     * @param phase the phase.
+     * @return the timestamp of the phase in millis, or null if it wasn't reached.
+     */
+    public synchronized Long getTimestamp(String phase) {
+        return timestamps.get(phase);
+    }
+
+    /**
+     * Returns the time of each phase since the start of the container.
+     *
+     * @return the reached phases in order, with their offset from the start in millis.
+     */
+    public synchronized Map<String, Long> getOffsets() {
+        Long start = timestamps.get(START);
+        if (null == start) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> offsets = new LinkedHashMap<>();
+        timestamps.forEach((phase, timestamp) -> offsets.put(phase, timestamp - start));
+        return offsets;
+    }
+
+    /**
+     * Returns the time between two phases.
+     *
+     * @return the time in millis, or -1 if one of the phases wasn't reached.
+     */
+    public synchronized long getMillis(String fromPhase, String toPhase) {
+        Long from = timestamps.get(fromPhase);
+        Long to = timestamps.get(toPhase);
+        return null == from || null == to ? -1 : to - from;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getOffsets().toString();
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.containers;
+
+import java.time.Duration;
+import org.testcontainers.containers.wait.strategy.HostPortWaitStrategy;
+import org.testcontainers.containers.wait.strategy.WaitStrategy;
+import org.testcontainers.containers.wait.strategy.WaitStrategyTarget;
+
+/**
+ * A wait strategy recording when the ports of the container opened and when the wrapped
+ * wait strategy passed.
+ *
+ * <p>The port wait and the wrapped wait share the startup timeout, the wrapped wait only gets
+ * the time the ports left of it.
+ */
+class TimedWaitStrategy implements WaitStrategy {
+
+    // the wrapped wait polls at least once, even when the ports took the whole timeout
+    private static final Duration MIN_REMAINING = Duration.ofSeconds(1);
+
+    private final WaitStrategy delegate;
+    private final StartupTimings timings;
+    private Duration startupTimeout = Duration.ofSeconds(300);
+
+    TimedWaitStrategy(WaitStrategy delegate, StartupTimings timings) {
+        this.delegate = delegate;
+        this.timings = timings;
+    }
+
+    @Override
+    public void waitUntilReady(WaitStrategyTarget target) {
+        long deadline = System.nanoTime() + startupTimeout.toNanos();
+        boolean hasPorts = !target.getExposedPorts().isEmpty();
+        if (hasPorts && !(delegate instanceof HostPortWaitStrategy)) {
+            new HostPortWaitStrategy()
+                    .withStartupTimeout(startupTimeout)
+                    .waitUntilReady(target);
+            timings.record(StartupTimings.PORT_OPEN);
+            long remainingNanos = Math.max(MIN_REMAINING.toNanos(), deadline - System.nanoTime());
+            delegate.withStartupTimeout(Duration.ofNanos(remainingNanos));
+        }
+        delegate.waitUntilReady(target);
+        if (hasPorts) {
+            timings.record(StartupTimings.PORT_OPEN);
+        }
+        timings.record(StartupTimings.READY);
+    }
+
+    @Override
+    public WaitStrategy withStartupTimeout(Duration startupTimeout) {
+        this.startupTimeout = startupTimeout;
+        delegate.withStartupTimeout(startupTimeout);
+        return this;
+    }
+}
@@ -18,7 +18,11 @@
  */
 package org.apache.pulsar.tests.integration.containers;
 
-import org.apache.pulsar.tests.integration.utils.DockerUtils;
+import static java.time.temporal.ChronoUnit.SECONDS;
+
+import java.time.Duration;
+import java.util.List;
+import org.testcontainers.containers.wait.strategy.WaitStrategy;
 
 /**
  * A pulsar container that runs functions worker.
@@ -39,14 +43,21 @@ public class WorkerContainer extends PulsarContainer<WorkerContainer> {
     }
 
     @Override
-    protected void beforeStop() {
-        super.beforeStop();
-        if (null != containerId) {
-            DockerUtils.dumpContainerDirToTargetCompressed(
-                    getDockerClient(),
-                    containerId,
-                    "/pulsar/logs/functions"
-            );
-        }
+    protected WaitStrategy createWaitStrategy() {
+        String workerId = getEnvMap().getOrDefault("PF_workerId", getHostname());
+        return new WorkerReadinessWaitStrategy(workerId)
+            .withStartupTimeout(Duration.of(300, SECONDS));
+    }
+
+    @Override
+    protected List<String> getArtifactDirs() {
+        List<String> dirs = super.getArtifactDirs();
+        dirs.add("/pulsar/logs/functions");
+        return dirs;
+    }
+
+    @Override
+    protected String getServiceLogFile() {
+        return "/var/log/pulsar/functions_worker.log";
     }
 }
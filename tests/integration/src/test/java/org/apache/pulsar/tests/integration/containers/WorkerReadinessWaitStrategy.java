@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.containers;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.Map;
+import org.testcontainers.containers.wait.strategy.WaitStrategyTarget;
+
+/**
+ * Wait for a functions worker to be a member of the functions worker cluster.
+ */
+class WorkerReadinessWaitStrategy extends ReadinessWaitStrategy {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String workerId;
+
+    WorkerReadinessWaitStrategy(String workerId) {
+        this.workerId = workerId;
+    }
+
+    @Override
+    protected String getDescription() {
+        return "a member of the functions worker cluster";
+    }
+
+    @Override
+    protected boolean isReady(WaitStrategyTarget target) throws Exception {
+        HttpResponse members = httpGet(target, PulsarContainer.BROKER_HTTP_PORT, "/admin/v2/worker/cluster");
+        if (members.getStatus() != 200) {
+            return false;
+        }
+        List<Map<String, Object>> workers = MAPPER.readValue(members.getBody(),
+                new TypeReference<List<Map<String, Object>>>() {});
+        return workers.stream().anyMatch(worker -> workerId.equals(worker.get("workerId")));
+    }
+}
@@ -18,7 +18,7 @@
  */
 package org.apache.pulsar.tests.integration.containers;
 
-import org.apache.pulsar.tests.integration.utils.DockerUtils;
+import java.util.List;
 
 /**
  * A pulsar container that runs zookeeper.
@@ -59,14 +59,16 @@ public class ZKContainer<SelfT extends PulsarContainer<SelfT>> extends PulsarCon
     }
 
     @Override
-    protected void beforeStop() {
-        super.beforeStop();
-        if (null != containerId && dumpZkDataBeforeStop) {
-            DockerUtils.dumpContainerDirToTargetCompressed(
-                getDockerClient(),
-                containerId,
-                "/pulsar/data/zookeeper"
-            );
+    protected List<String> getArtifactDirs() {
+        List<String> dirs = super.getArtifactDirs();
+        if (dumpZkDataBeforeStop) {
+            dirs.add("/pulsar/data/zookeeper");
         }
+        return dirs;
+    }
+
+    @Override
+    protected String getServiceLogFile() {
+        return "/var/log/pulsar/local-zk.log";
     }
 }
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.docker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A file to copy into a container, streamed from its source when the copy happens.
+ */
+public abstract class ContainerFile {
+
+    private static final int DEFAULT_MODE = 0644;
+    private static final int EXECUTABLE_MODE = 0755;
+
+    private final String path;
+    private final long size;
+    private final int mode;
+
+    private ContainerFile(String path, long size, int mode) {
+        if (!path.startsWith("/")) {
+            throw new IllegalArgumentException("Path " + path + " in the container must be absolute");
+        }
+        this.path = path;
+        this.size = size;
+        this.mode = mode;
+    }
+
+    public static ContainerFile of(String path, byte[] contents) {
+        return new ContainerFile(path, contents.length, DEFAULT_MODE) {
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(contents);
+            }
+        };
+    }
+
+    /**
+     * A file copied from the host, keeping whether it is executable.
+     */
+    public static ContainerFile of(String path, Path source) throws IOException {
+        int mode = Files.isExecutable(source) ? EXECUTABLE_MODE : DEFAULT_MODE;
+        return new ContainerFile(path, Files.size(source), mode) {
+            @Override
+            public InputStream open() throws IOException {
+                return Files.newInputStream(source);
+            }
+        };
+    }
+
+    /**
+     * A file read from a stream, which can only be copied once. The stream is closed once it is copied.
+     *
+     * @param path the path of the file in the container.
+     * @param contents the contents of the file.
+     * @param size the number of bytes of the stream, the size of a tar entry is part of its header.
+     */
+    public static ContainerFile of(String path, InputStream contents, long size) {
+        return new ContainerFile(path, size, DEFAULT_MODE) {
+            @Override
+            public InputStream open() {
+                return contents;
+            }
+        };
+    }
+
+    public abstract InputStream open() throws IOException;
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
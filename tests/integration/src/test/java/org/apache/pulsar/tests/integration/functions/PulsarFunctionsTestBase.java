@@ -50,6 +50,12 @@ public abstract class PulsarFunctionsTestBase extends PulsarTestSuite {
         this.functionRuntimeType = functionRuntimeType;
     }
 
+    @Override
+    protected boolean isClusterPoolable() {
+        // function workers are added to and removed from the cluster
+        return false;
+    }
+
     @BeforeClass
     public void setupFunctionWorkers() {
         final int numFunctionWorkers = 2;
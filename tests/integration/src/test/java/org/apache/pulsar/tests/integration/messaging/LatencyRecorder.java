@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.messaging;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.apache.pulsar.client.api.TypedMessageBuilder;
+import org.apache.pulsar.common.naming.TopicName;
+import org.apache.pulsar.tests.integration.benchmark.BenchmarkResults;
+
+/**
+ * Records the publish to receive latency of the messages of a test.
+ *
+ * <p>Messages are stamped with their send time in a property, and the latency is recorded as soon
+ * as they arrive at the consumer, before the test receives and acknowledges them, in one histogram
+ * per subscription type and topic kind. Producers and consumers run in the test jvm, so both ends
+ * use the same clock.
+ *
+ * <p>The recorder is opt-in with the system property {@link #ENABLED_PROPERTY}. The percentiles of
+ * each test are logged and written to `target/benchmark-results/messaging-latency.json`.
+ */
+@Slf4j
+public class LatencyRecorder {
+
+    public static final String ENABLED_PROPERTY = "pulsar.messaging.recordLatency";
+    public static final String SEND_NANOS_PROPERTY = "latency-recorder-send-nanos";
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final BenchmarkResults RESULTS = new BenchmarkResults("messaging-latency");
+
+    private final String testName;
+    private final Map<String, Histogram> histograms = new TreeMap<>();
+
+    public LatencyRecorder(String testName) {
+        this.testName = testName;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    public <T> TypedMessageBuilder<T> stamp(TypedMessageBuilder<T> message) {
+        return message.property(SEND_NANOS_PROPERTY, Long.toString(System.nanoTime()));
+    }
+
+    /**
+     * Record the latency of a message that arrived at a consumer, unless it was sent without a stamp.
+     *
+     * @param subscriptionType the subscription type of the consumer that received the message, null if unknown.
+     * @param message the received message.
+     */
+    public void record(SubscriptionType subscriptionType, Message<?> message) {
+        long receiveNanos = System.nanoTime();
+        String sendNanos = message.getProperty(SEND_NANOS_PROPERTY);
+        if (null == sendNanos) {
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(receiveNanos - Long.parseLong(sendNanos));
+        String key = (null == subscriptionType ? "Unknown" : subscriptionType.name())
+                + "/" + topicKind(message.getTopicName());
+        synchronized (histograms) {
+            histograms.computeIfAbsent(key, k -> new Histogram(HIGHEST_TRACKABLE_MICROS, 3))
+                    .recordValue(Math.max(0, Math.min(micros, HIGHEST_TRACKABLE_MICROS)));
+        }
+    }
+
+    private static String topicKind(String topic) {
+        TopicName topicName = TopicName.get(topic);
+        return (topicName.isPersistent() ? "persistent" : "non-persistent")
+                + (topicName.isPartitioned() ? "-partitioned" : "");
+    }
+
+    /**
+     * Log the latency percentiles of the test and add them to the results file.
+     */
+    public void report() {
+        synchronized (histograms) {
+            if (histograms.isEmpty()) {
+                return;
+            }
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                Histogram histogram = entry.getValue();
+                log.info("{} [{}] publish to receive latency (us): count={} p50={} p99={} p99.9={} max={}",
+                        testName, entry.getKey(), histogram.getTotalCount(),
+                        histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                        histogram.getValueAtPercentile(99.9), histogram.getMaxValue());
+                RESULTS.newRun()
+                        .with("test", testName)
+                        .with("subscription", entry.getKey())
+                        .withLatency("end_to_end", histogram);
+            }
+        }
+        try {
+            RESULTS.write();
+        } catch (IOException e) {
+            log.warn("Failed to write the latencies of {}", testName, e);
+        }
+    }
+}
@@ -26,9 +26,14 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.ConsumerBuilder;
 import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.Producer;
 import org.apache.pulsar.client.api.PulsarClientException;
+import org.apache.pulsar.client.api.SubscriptionType;
+import org.apache.pulsar.client.api.TypedMessageBuilder;
 import org.apache.pulsar.tests.integration.suites.PulsarTestSuite;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 
 import java.lang.reflect.Method;
@@ -37,16 +42,97 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public abstract class MessagingBase extends PulsarTestSuite {
 
     protected String methodName;
+    protected LatencyRecorder latencyRecorder;
+    private final Map<Consumer<?>, ArrivalQueue<?>> arrivalQueues = new ConcurrentHashMap<>();
 
     @BeforeMethod
     public void beforeMethod(Method m) throws Exception {
         methodName = m.getName();
+        latencyRecorder = LatencyRecorder.isEnabled()
+                ? new LatencyRecorder(getClass().getSimpleName() + "." + methodName) : null;
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void afterMethod() {
+        if (null != latencyRecorder) {
+            latencyRecorder.report();
+            latencyRecorder = null;
+        }
+        arrivalQueues.clear();
+    }
+
+    /**
+     * Returns a new message of the producer, stamped with its send time when latencies are recorded.
+     */
+    protected <T> TypedMessageBuilder<T> newMessage(Producer<T> producer) {
+        TypedMessageBuilder<T> message = producer.newMessage();
+        return null == latencyRecorder ? message : latencyRecorder.stamp(message);
+    }
+
+    /**
+     * Subscribe a consumer of the test with the given subscription type.
+     *
+     * <p>When latencies are recorded, the messages of the consumer are taken from the client as soon as
+     * they arrive, and their latency is recorded before the test receives and acknowledges them, so it
+     * doesn't include the time they wait for the test to drain the consumers one after the other.
+     */
+    protected <T> Consumer<T> subscribe(ConsumerBuilder<T> builder, SubscriptionType subscriptionType)
+            throws PulsarClientException {
+        Consumer<T> consumer = builder.subscriptionType(subscriptionType).subscribe();
+        if (null != latencyRecorder) {
+            ArrivalQueue<T> queue = new ArrivalQueue<>();
+            arrivalQueues.put(consumer, queue);
+            receiveOnArrival(consumer, subscriptionType, latencyRecorder, queue);
+        }
+        return consumer;
+    }
+
+    private static <T> void receiveOnArrival(Consumer<T> consumer, SubscriptionType subscriptionType,
+                                             LatencyRecorder recorder, ArrivalQueue<T> queue) {
+        consumer.receiveAsync().whenComplete((message, e) -> {
+            if (null != e) {
+                // the consumer was closed
+                queue.closed = true;
+                return;
+            }
+            recorder.record(subscriptionType, message);
+            queue.messages.add(message);
+            receiveOnArrival(consumer, subscriptionType, recorder, queue);
+        });
+    }
+
+    /**
+     * Receive the next message of a consumer, waiting for up to 3 seconds.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Message<T> receive(Consumer<T> consumer) throws PulsarClientException {
+        ArrivalQueue<T> queue = (ArrivalQueue<T>) arrivalQueues.get(consumer);
+        if (null == queue) {
+            return consumer.receive(3, TimeUnit.SECONDS);
+        }
+        if (queue.closed) {
+            throw new PulsarClientException.AlreadyClosedException("Consumer already closed");
+        }
+        try {
+            return queue.messages.poll(3, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PulsarClientException(e);
+        }
+    }
+
+    private static class ArrivalQueue<T> {
+        final BlockingQueue<Message<T>> messages = new LinkedBlockingQueue<>();
+        volatile boolean closed = false;
     }
 
     protected String getNonPartitionedTopic(String topicPrefix, boolean isPersistent) throws Exception {
@@ -74,7 +160,7 @@ public abstract class MessagingBase extends PulsarTestSuite {
             Map<String, Message<T>> lastReceivedMap = new HashMap<>();
             while (true) {
                 try {
-                    currentReceived = consumer.receive(3, TimeUnit.SECONDS);
+                    currentReceived = receive(consumer);
                 } catch (PulsarClientException e) {
                     log.info("no more messages to receive for consumer {}", consumer.getConsumerName());
                     break;
@@ -106,7 +192,7 @@ public abstract class MessagingBase extends PulsarTestSuite {
             Message<T> currentReceived = null;
             while (true) {
                 try {
-                    currentReceived = consumer.receive(3, TimeUnit.SECONDS);
+                    currentReceived = receive(consumer);
                 } catch (PulsarClientException e) {
                     log.info("no more messages to receive for consumer {}", consumer.getConsumerName());
                     break;
@@ -132,7 +218,7 @@ public abstract class MessagingBase extends PulsarTestSuite {
             Message<T> currentReceived;
             while (true) {
                 try {
-                    currentReceived = consumer.receive(3, TimeUnit.SECONDS);
+                    currentReceived = receive(consumer);
                 } catch (PulsarClientException e) {
                     log.info("no more messages to receive for consumer {}", consumer.getConsumerName());
                     break;
@@ -53,11 +53,9 @@ public class TopicMessagingBase extends MessagingBase {
                 .serviceUrl(serviceUrl)
                 .build();
         @Cleanup
-        final Consumer<String> consumer = client.newConsumer(Schema.STRING)
+        final Consumer<String> consumer = subscribe(client.newConsumer(Schema.STRING)
                 .topic(topicName)
-                .subscriptionName("test-sub")
-                .subscriptionType(SubscriptionType.Exclusive)
-                .subscribe();
+                .subscriptionName("test-sub"), SubscriptionType.Exclusive);
         try {
             client.newConsumer(Schema.STRING)
                     .topic(topicName)
@@ -76,7 +74,7 @@ public class TopicMessagingBase extends MessagingBase {
                 .producerName(producerName)
                 .create();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage().value(producer.getProducerName() + "-" + i).send();
+            MessageId messageId = newMessage(producer).value(producer.getProducerName() + "-" + i).send();
             assertNotNull(messageId);
         }
         log.info("public messages complete.");
@@ -94,11 +92,9 @@ public class TopicMessagingBase extends MessagingBase {
                 .build();
         List<Consumer<String>> consumerList = new ArrayList<>(3);
         for (int i = 0; i < partitions; i++) {
-            Consumer<String> consumer = client.newConsumer(Schema.STRING)
+            Consumer<String> consumer = subscribe(client.newConsumer(Schema.STRING)
                     .topic(topicName + "-partition-" + i)
-                    .subscriptionName("test-sub")
-                    .subscriptionType(SubscriptionType.Exclusive)
-                    .subscribe();
+                    .subscriptionName("test-sub"), SubscriptionType.Exclusive);
             consumerList.add(consumer);
         }
         assertEquals(partitions, consumerList.size());
@@ -121,7 +117,7 @@ public class TopicMessagingBase extends MessagingBase {
                 .messageRoutingMode(MessageRoutingMode.RoundRobinPartition)
                 .create();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage().value(producer.getProducerName() + "-" + i).send();
+            MessageId messageId = newMessage(producer).value(producer.getProducerName() + "-" + i).send();
             assertNotNull(messageId);
         }
         log.info("public messages complete.");
@@ -130,7 +126,7 @@ public class TopicMessagingBase extends MessagingBase {
         Consumer<String> crashedConsumer = consumerList.remove(0);
         crashedConsumer.close();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage().value(producer.getProducerName() + "-" + i).send();
+            MessageId messageId = newMessage(producer).value(producer.getProducerName() + "-" + i).send();
             assertNotNull(messageId);
         }
         receiveMessagesCheckOrderAndDuplicate(consumerList, messagesToSend - 3);
@@ -146,17 +142,13 @@ public class TopicMessagingBase extends MessagingBase {
                 .serviceUrl(serviceUrl)
                 .build();
         List<Consumer<String>> consumerList = new ArrayList<>(2);
-        final Consumer<String> consumer = client.newConsumer(Schema.STRING)
+        final Consumer<String> consumer = subscribe(client.newConsumer(Schema.STRING)
                 .topic(topicName)
-                .subscriptionName("test-sub")
-                .subscriptionType(SubscriptionType.Failover)
-                .subscribe();
+                .subscriptionName("test-sub"), SubscriptionType.Failover);
         consumerList.add(consumer);
-        final Consumer<String> standbyConsumer = client.newConsumer(Schema.STRING)
+        final Consumer<String> standbyConsumer = subscribe(client.newConsumer(Schema.STRING)
                 .topic(topicName)
-                .subscriptionName("test-sub")
-                .subscriptionType(SubscriptionType.Failover)
-                .subscribe();
+                .subscriptionName("test-sub"), SubscriptionType.Failover);
         assertNotNull(standbyConsumer);
         assertTrue(standbyConsumer.isConnected());
         consumerList.add(standbyConsumer);
@@ -169,7 +161,7 @@ public class TopicMessagingBase extends MessagingBase {
                 .producerName(producerName)
                 .create();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage().value(producer.getProducerName() + "-" + i).send();
+            MessageId messageId = newMessage(producer).value(producer.getProducerName() + "-" + i).send();
             assertNotNull(messageId);
         }
         log.info("public messages complete.");
@@ -180,7 +172,7 @@ public class TopicMessagingBase extends MessagingBase {
         Thread.sleep(3000);
         crashedConsumer.close();
         for (int i = 0; i < messagesToSend; i++) {
-                MessageId messageId = producer.newMessage().value(producer.getProducerName() + "-" + i).send();
+                MessageId messageId = newMessage(producer).value(producer.getProducerName() + "-" + i).send();
                 assertNotNull(messageId);
         }
         receiveMessagesCheckOrderAndDuplicate(consumerList, messagesToSend);
@@ -197,17 +189,13 @@ public class TopicMessagingBase extends MessagingBase {
                 .serviceUrl(serviceUrl)
                 .build();
         List<Consumer<String>> consumerList = new ArrayList<>(3);
-        Consumer<String> consumer = client.newConsumer(Schema.STRING)
+        Consumer<String> consumer = subscribe(client.newConsumer(Schema.STRING)
                 .topic(topicName)
-                .subscriptionName("test-sub")
-                .subscriptionType(SubscriptionType.Failover)
-                .subscribe();
+                .subscriptionName("test-sub"), SubscriptionType.Failover);
         consumerList.add(consumer);
-        Consumer<String> standbyConsumer = client.newConsumer(Schema.STRING)
+        Consumer<String> standbyConsumer = subscribe(client.newConsumer(Schema.STRING)
                 .topic(topicName)
-                .subscriptionName("test-sub")
-                .subscriptionType(SubscriptionType.Failover)
-                .subscribe();
+                .subscriptionName("test-sub"), SubscriptionType.Failover);
         assertNotNull(standbyConsumer);
         assertTrue(standbyConsumer.isConnected());
         consumerList.add(standbyConsumer);
@@ -221,7 +209,7 @@ public class TopicMessagingBase extends MessagingBase {
                 .producerName(producerName)
                 .create();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage().value(producer.getProducerName() + "-" + i).send();
+            MessageId messageId = newMessage(producer).value(producer.getProducerName() + "-" + i).send();
             assertNotNull(messageId);
         }
         log.info("public messages complete.");
@@ -232,7 +220,7 @@ public class TopicMessagingBase extends MessagingBase {
         Thread.sleep(3000);
         crashedConsumer.close();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage().value(producer.getProducerName() + "-" + i).send();
+            MessageId messageId = newMessage(producer).value(producer.getProducerName() + "-" + i).send();
             assertNotNull(messageId);
         }
         receiveMessagesCheckOrderAndDuplicate(consumerList, messagesToSend);
@@ -248,17 +236,13 @@ public class TopicMessagingBase extends MessagingBase {
                 .serviceUrl(serviceUrl)
                 .build();
         List<Consumer<String>> consumerList = new ArrayList<>(2);
-        final Consumer<String> consumer = client.newConsumer(Schema.STRING)
+        final Consumer<String> consumer = subscribe(client.newConsumer(Schema.STRING)
                 .topic(topicName)
-                .subscriptionName("test-sub")
-                .subscriptionType(SubscriptionType.Shared)
-                .subscribe();
+                .subscriptionName("test-sub"), SubscriptionType.Shared);
         consumerList.add(consumer);
-        Consumer<String> moreConsumer = client.newConsumer(Schema.STRING)
+        Consumer<String> moreConsumer = subscribe(client.newConsumer(Schema.STRING)
                 .topic(topicName)
-                .subscriptionName("test-sub")
-                .subscriptionType(SubscriptionType.Shared)
-                .subscribe();
+                .subscriptionName("test-sub"), SubscriptionType.Shared);
         assertNotNull(moreConsumer);
         assertTrue(moreConsumer.isConnected());
         consumerList.add(moreConsumer);
@@ -271,7 +255,7 @@ public class TopicMessagingBase extends MessagingBase {
                 .producerName(producerName)
                 .create();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage().value(producer.getProducerName() + "-" + i).send();
+            MessageId messageId = newMessage(producer).value(producer.getProducerName() + "-" + i).send();
             assertNotNull(messageId);
         }
         log.info("public messages complete.");
@@ -280,7 +264,7 @@ public class TopicMessagingBase extends MessagingBase {
         Consumer<String> crashedConsumer = consumerList.remove(0);
         crashedConsumer.close();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage().value(producer.getProducerName() + "-" + i).send();
+            MessageId messageId = newMessage(producer).value(producer.getProducerName() + "-" + i).send();
             assertNotNull(messageId);
         }
         receiveMessagesCheckDuplicate(consumerList, messagesToSend);
@@ -298,11 +282,9 @@ public class TopicMessagingBase extends MessagingBase {
                 .build();
         List<Consumer<String>> consumerList = new ArrayList<>(3);
         for (int i = 0; i < partitions; i++) {
-            Consumer<String> consumer = client.newConsumer(Schema.STRING)
+            Consumer<String> consumer = subscribe(client.newConsumer(Schema.STRING)
                     .topic(topicName)
-                    .subscriptionName("test-sub")
-                    .subscriptionType(SubscriptionType.Shared)
-                    .subscribe();
+                    .subscriptionName("test-sub"), SubscriptionType.Shared);
             consumerList.add(consumer);
         }
         assertEquals(partitions, consumerList.size());
@@ -315,7 +297,7 @@ public class TopicMessagingBase extends MessagingBase {
                 .producerName(producerName)
                 .create();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage().value(producer.getProducerName() + "-" + i).send();
+            MessageId messageId = newMessage(producer).value(producer.getProducerName() + "-" + i).send();
             assertNotNull(messageId);
         }
         log.info("public messages complete.");
@@ -324,7 +306,7 @@ public class TopicMessagingBase extends MessagingBase {
         Consumer<String> crashedConsumer = consumerList.remove(0);
         crashedConsumer.close();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage().value(producer.getProducerName() + "-" + i).send();
+            MessageId messageId = newMessage(producer).value(producer.getProducerName() + "-" + i).send();
             assertNotNull(messageId);
         }
         receiveMessagesCheckDuplicate(consumerList, messagesToSend);
@@ -340,18 +322,14 @@ public class TopicMessagingBase extends MessagingBase {
                 .serviceUrl(serviceUrl)
                 .build();
         List<Consumer<String>> consumerList = new ArrayList<>(2);
-        Consumer<String> consumer = client.newConsumer(Schema.STRING)
+        Consumer<String> consumer = subscribe(client.newConsumer(Schema.STRING)
                 .topic(topicName)
-                .subscriptionName("test-sub")
-                .subscriptionType(SubscriptionType.Key_Shared)
-                .subscribe();
+                .subscriptionName("test-sub"), SubscriptionType.Key_Shared);
         assertTrue(consumer.isConnected());
         consumerList.add(consumer);
-        Consumer<String> moreConsumer = client.newConsumer(Schema.STRING)
+        Consumer<String> moreConsumer = subscribe(client.newConsumer(Schema.STRING)
                 .topic(topicName)
-                .subscriptionName("test-sub")
-                .subscriptionType(SubscriptionType.Key_Shared)
-                .subscribe();
+                .subscriptionName("test-sub"), SubscriptionType.Key_Shared);
         assertNotNull(moreConsumer);
         assertTrue(moreConsumer.isConnected());
         consumerList.add(moreConsumer);
@@ -364,7 +342,7 @@ public class TopicMessagingBase extends MessagingBase {
                 .producerName(producerName)
                 .create();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage()
+            MessageId messageId = newMessage(producer)
                     .key(UUID.randomUUID().toString())
                     .value(producer.getProducerName() + "-" + i)
                     .send();
@@ -376,7 +354,7 @@ public class TopicMessagingBase extends MessagingBase {
         Consumer<String> crashedConsumer = consumerList.remove(0);
         crashedConsumer.close();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage()
+            MessageId messageId = newMessage(producer)
                     .key(UUID.randomUUID().toString())
                     .value(producer.getProducerName() + "-" + i)
                     .send();
@@ -396,18 +374,14 @@ public class TopicMessagingBase extends MessagingBase {
                 .serviceUrl(serviceUrl)
                 .build();
         List<Consumer<String>> consumerList = new ArrayList<>(2);
-        Consumer<String> consumer = client.newConsumer(Schema.STRING)
+        Consumer<String> consumer = subscribe(client.newConsumer(Schema.STRING)
                 .topic(topicName)
-                .subscriptionName("test-sub")
-                .subscriptionType(SubscriptionType.Key_Shared)
-                .subscribe();
+                .subscriptionName("test-sub"), SubscriptionType.Key_Shared);
         assertTrue(consumer.isConnected());
         consumerList.add(consumer);
-        Consumer<String> moreConsumer = client.newConsumer(Schema.STRING)
+        Consumer<String> moreConsumer = subscribe(client.newConsumer(Schema.STRING)
                 .topic(topicName)
-                .subscriptionName("test-sub")
-                .subscriptionType(SubscriptionType.Key_Shared)
-                .subscribe();
+                .subscriptionName("test-sub"), SubscriptionType.Key_Shared);
         assertNotNull(moreConsumer);
         assertTrue(moreConsumer.isConnected());
         consumerList.add(moreConsumer);
@@ -420,7 +394,7 @@ public class TopicMessagingBase extends MessagingBase {
                 .producerName(producerName)
                 .create();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage()
+            MessageId messageId = newMessage(producer)
                     .key(UUID.randomUUID().toString())
                     .value(producer.getProducerName() + "-" + i)
                     .send();
@@ -432,7 +406,7 @@ public class TopicMessagingBase extends MessagingBase {
         Consumer<String> crashedConsumer = consumerList.remove(0);
         crashedConsumer.close();
         for (int i = 0; i < messagesToSend; i++) {
-            MessageId messageId = producer.newMessage()
+            MessageId messageId = newMessage(producer)
                     .key(UUID.randomUUID().toString())
                     .value(producer.getProducerName() + "-" + i)
                     .send();
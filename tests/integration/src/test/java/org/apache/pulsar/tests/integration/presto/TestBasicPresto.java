@@ -48,6 +48,12 @@ public class TestBasicPresto extends PulsarTestSuite {
 
     private static final int NUM_OF_STOCKS = 10;
 
+    @Override
+    protected boolean isClusterPoolable() {
+        // the presto worker is started and stopped on the cluster
+        return false;
+    }
+
     @BeforeClass
     public void setupPresto() throws Exception {
         log.info("[setupPresto]");
@@ -64,6 +64,12 @@ public class TestPrestoQueryTieredStorage extends PulsarTestSuite {
 
     private S3Container s3Container;
 
+    @Override
+    protected boolean isClusterPoolable() {
+        // the brokers are configured before the cluster starts
+        return false;
+    }
+
     @Override
     protected void beforeStartCluster() throws Exception {
         for (BrokerContainer brokerContainer : pulsarCluster.getBrokers()) {
@@ -65,6 +65,12 @@ public abstract class PulsarTieredStorageTestSuite extends PulsarClusterTestBase
 
     protected abstract Map<String, String> getEnv();
 
+    @Override
+    protected boolean isClusterPoolable() {
+        // the brokers are configured before the cluster starts
+        return false;
+    }
+
     @Override
     protected void beforeStartCluster() throws Exception {
         super.beforeStartCluster();
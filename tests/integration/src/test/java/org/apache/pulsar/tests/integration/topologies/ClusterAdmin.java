@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.topologies;
+
+import java.util.Collections;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.admin.PulsarAdmin;
+import org.apache.pulsar.common.policies.data.TenantInfo;
+import org.apache.pulsar.tests.integration.docker.ContainerExecResult;
+
+/**
+ * Admin operations on a pulsar cluster.
+ *
+ * <p>By default the operations go through a single long-lived {@link PulsarAdmin} owned by the
+ * cluster, so they cost one http round trip instead of a `docker exec` that boots a JVM running
+ * `pulsar-admin` inside a broker. The cli mode runs `pulsar-admin` on any broker instead and is
+ * meant for suites that test the cli itself. In both modes a failed operation throws.
+ */
+@Slf4j
+public class ClusterAdmin implements AutoCloseable {
+
+    private final PulsarCluster cluster;
+    private final boolean cliMode;
+    // the url the admin was built with, the url of a cluster without proxies changes when its first broker restarts
+    private String adminUrl;
+    private PulsarAdmin admin;
+
+    ClusterAdmin(PulsarCluster cluster, boolean cliMode) {
+        this.cluster = cluster;
+        this.cliMode = cliMode;
+    }
+
+    public boolean isCliMode() {
+        return cliMode;
+    }
+
+    /**
+     * Returns the admin client of the cluster, which is built on first use and closed with the cluster.
+     * Callers must not close it.
+     *
+     * @return the admin client of the cluster.
+     */
+    public synchronized PulsarAdmin getPulsarAdmin() throws Exception {
+        String url = cluster.getHttpServiceUrl();
+        if (null != admin && !url.equals(adminUrl)) {
+            log.info("Http service url of cluster {} changed from {} to {}, rebuilding its admin client",
+                    cluster.getClusterName(), adminUrl, url);
+            close();
+        }
+        if (null == admin) {
+            admin = PulsarAdmin.builder()
+                    .serviceHttpUrl(url)
+                    .build();
+            adminUrl = url;
+        }
+        return admin;
+    }
+
+    public void createTenant(String tenant, Set<String> allowedClusters) throws Exception {
+        if (cliMode) {
+            runCli("tenants", "create", tenant,
+                    "--allowed-clusters", String.join(",", allowedClusters));
+        } else {
+            getPulsarAdmin().tenants().createTenant(tenant, new TenantInfo(Collections.emptySet(), allowedClusters));
+        }
+    }
+
+    /**
+     * Create the namespace `public/{nsName}` on the cluster.
+     *
+     * @param nsName the local name of the namespace.
+     */
+    public void createNamespace(String nsName) throws Exception {
+        String namespace = "public/" + nsName;
+        if (cliMode) {
+            runCli("namespaces", "create", namespace,
+                    "--clusters", cluster.getClusterName());
+        } else {
+            getPulsarAdmin().namespaces().createNamespace(namespace, Collections.singleton(cluster.getClusterName()));
+        }
+    }
+
+    public void createPartitionedTopic(String topicName, int partitions) throws Exception {
+        if (cliMode) {
+            runCli("topics", "create-partitioned-topic", topicName,
+                    "-p", String.valueOf(partitions));
+        } else {
+            getPulsarAdmin().topics().createPartitionedTopic(topicName, partitions);
+        }
+    }
+
+    /**
+     * Enable or disable the deduplication of the namespace `public/{nsName}`.
+     *
+     * @param nsName the local name of the namespace.
+     * @param enabled whether to enable deduplication.
+     */
+    public void enableDeduplication(String nsName, boolean enabled) throws Exception {
+        String namespace = "public/" + nsName;
+        if (cliMode) {
+            runCli("namespaces", "set-deduplication", namespace,
+                    enabled ? "--enable" : "--disable");
+        } else {
+            getPulsarAdmin().namespaces().setDeduplicationStatus(namespace, enabled);
+        }
+    }
+
+    private ContainerExecResult runCli(String... commands) throws Exception {
+        return cluster.runAdminCommandOnAnyBroker(commands);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (null == admin) {
+            return;
+        }
+        try {
+            admin.close();
+        } catch (Exception e) {
+            log.warn("Failed to close the admin client of cluster {}", cluster.getClusterName(), e);
+        }
+        admin = null;
+        adminUrl = null;
+    }
+}
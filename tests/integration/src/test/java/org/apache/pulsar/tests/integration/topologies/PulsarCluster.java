@@ -19,33 +19,53 @@
 package org.apache.pulsar.tests.integration.topologies;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.pulsar.tests.integration.containers.PulsarContainer.BOOKIE_PORT;
 import static org.apache.pulsar.tests.integration.containers.PulsarContainer.BROKER_HTTP_PORT;
+import static org.apache.pulsar.tests.integration.containers.PulsarContainer.BROKER_PORT;
 import static org.apache.pulsar.tests.integration.containers.PulsarContainer.CS_PORT;
 import static org.apache.pulsar.tests.integration.containers.PulsarContainer.ZK_PORT;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.admin.PulsarAdmin;
+import org.apache.pulsar.common.util.FutureUtil;
 import org.apache.pulsar.tests.integration.containers.BKContainer;
 import org.apache.pulsar.tests.integration.containers.BrokerContainer;
+import org.apache.pulsar.tests.integration.containers.ChaosContainer;
 import org.apache.pulsar.tests.integration.containers.CSContainer;
 import org.apache.pulsar.tests.integration.containers.PrestoWorkerContainer;
 import org.apache.pulsar.tests.integration.containers.ProxyContainer;
+import org.apache.pulsar.tests.integration.containers.ProxyStats;
 import org.apache.pulsar.tests.integration.containers.PulsarContainer;
 import org.apache.pulsar.tests.integration.containers.WorkerContainer;
 import org.apache.pulsar.tests.integration.containers.ZKContainer;
+import org.apache.pulsar.tests.integration.docker.ContainerExecException;
 import org.apache.pulsar.tests.integration.docker.ContainerExecResult;
 import org.testcontainers.containers.BindMode;
 import org.testcontainers.containers.GenericContainer;
@@ -60,6 +80,16 @@ public class PulsarCluster {
     public static final String ADMIN_SCRIPT = "/pulsar/bin/pulsar-admin";
     public static final String CLIENT_SCRIPT = "/pulsar/bin/pulsar-client";
     public static final String PULSAR_COMMAND_SCRIPT = "/pulsar/bin/pulsar";
+    public static final String BOOKKEEPER_SCRIPT = "/pulsar/bin/bookkeeper";
+
+    /**
+     * The ensemble size of the ledgers of the brokers, a cluster needs at least as many bookies.
+     */
+    public static final int MANAGED_LEDGER_ENSEMBLE_SIZE = 2;
+
+    private static final int GRACEFUL_STOP_TIMEOUT_SECONDS = 60;
+    // the exit code of `timeout` when the command timed out
+    private static final int TIMEOUT_EXIT_CODE = 124;
 
     /**
      * Pulsar Cluster Spec
@@ -81,115 +111,218 @@ public class PulsarCluster {
     private final Map<String, BKContainer> bookieContainers;
     private final Map<String, BrokerContainer> brokerContainers;
     private final Map<String, WorkerContainer> workerContainers;
-    private final ProxyContainer proxyContainer;
+    private final Map<String, ProxyContainer> proxyContainers;
     private PrestoWorkerContainer prestoWorkerContainer;
     private Map<String, GenericContainer<?>> externalServices = Collections.emptyMap();
     private final boolean enablePrestoWorker;
+    private final Map<String, Long> startupPhaseTimes = new LinkedHashMap<>();
+    private final Map<String, List<PulsarContainer<?>>> startupPhaseContainers = new LinkedHashMap<>();
+    private final String hostnamePrefix;
+    private final String zkHost;
+    private final boolean sharedConfigurationStore;
+    // indexes of the next broker and bookie added to the running cluster, names are never reused
+    private int nextBrokerIndex;
+    private int nextBookieIndex;
+    // the broker whose url the presto worker and the function workers are configured with
+    private String serviceBrokerName = "pulsar-broker-0";
+    private final ClusterAdmin admin = new ClusterAdmin(this, false);
+    private final ClusterAdmin cliAdmin = new ClusterAdmin(this, true);
 
     private PulsarCluster(PulsarClusterSpec spec) {
+        this(spec, Network.newNetwork(), null, "");
+    }
+
+    /**
+     * Create a cluster that joins the given network.
+     *
+     * <p>When a configuration store is given, the cluster shares it with the other clusters of the
+     * network instead of running its own, and neither the configuration store nor the network are
+     * stopped with the cluster. The hostname prefix keeps the hosts of the cluster unique on the
+     * network, the containers are still looked up by their unprefixed names.
+     *
+     * @param spec pulsar cluster spec.
+     * @param network the network to run the cluster in.
+     * @param sharedCsContainer the shared configuration store, or null to run a dedicated one.
+     * @param hostnamePrefix the prefix of the hostnames of the cluster.
+     */
+    PulsarCluster(PulsarClusterSpec spec, Network network, CSContainer sharedCsContainer, String hostnamePrefix) {
+        checkArgument(null == sharedCsContainer || !spec.enableSnapshot(),
+                "Cluster snapshots can't be used with a shared configuration store");
 
         this.spec = spec;
         this.clusterName = spec.clusterName();
-        this.network = Network.newNetwork();
+        this.network = network;
+        this.hostnamePrefix = hostnamePrefix;
+        this.zkHost = hostname(ZKContainer.NAME);
+        this.sharedConfigurationStore = null != sharedCsContainer;
         this.enablePrestoWorker = spec.enablePrestoWorker();
 
         if (enablePrestoWorker) {
-            prestoWorkerContainer = new PrestoWorkerContainer(clusterName, PrestoWorkerContainer.NAME)
+            prestoWorkerContainer = new PrestoWorkerContainer(clusterName, hostname(PrestoWorkerContainer.NAME))
                     .withNetwork(network)
-                    .withNetworkAliases(PrestoWorkerContainer.NAME)
+                    .withNetworkAliases(hostname(PrestoWorkerContainer.NAME))
                     .withEnv("clusterName", clusterName)
-                    .withEnv("zkServers", ZKContainer.NAME)
-                    .withEnv("zookeeperServers", ZKContainer.NAME + ":" + ZKContainer.ZK_PORT)
-                    .withEnv("pulsar.zookeeper-uri", ZKContainer.NAME + ":" + ZKContainer.ZK_PORT)
-                    .withEnv("pulsar.broker-service-url", "http://pulsar-broker-0:8080");
+                    .withEnv("zkServers", zkHost)
+                    .withEnv("zookeeperServers", zkHost + ":" + ZK_PORT)
+                    .withEnv("pulsar.zookeeper-uri", zkHost + ":" + ZK_PORT)
+                    .withEnv("pulsar.broker-service-url", "http://" + hostname(serviceBrokerName) + ":8080");
         } else {
             prestoWorkerContainer = null;
         }
 
 
-        this.zkContainer = new ZKContainer(clusterName);
+        this.zkContainer = new ZKContainer(clusterName, zkHost, ZKContainer.NAME, "bin/run-local-zk.sh",
+            ZK_PORT, PulsarContainer.INVALID_PORT);
         this.zkContainer
             .withNetwork(network)
-            .withNetworkAliases(ZKContainer.NAME)
+            .withNetworkAliases(zkHost)
             .withEnv("clusterName", clusterName)
-            .withEnv("zkServers", ZKContainer.NAME)
+            .withEnv("zkServers", zkHost)
             .withEnv("configurationStore", CSContainer.NAME + ":" + CS_PORT)
             .withEnv("forceSync", "no")
-            .withEnv("pulsarNode", "pulsar-broker-0");
+            // only used to initialize the cluster metadata, before any broker is removed
+            .withEnv("pulsarNode", hostname(serviceBrokerName));
+        this.zkContainer.withResourceProfile(spec.zookeeperResources());
 
-        this.csContainer = new CSContainer(clusterName)
-            .withNetwork(network)
-            .withNetworkAliases(CSContainer.NAME);
+        if (sharedConfigurationStore) {
+            this.csContainer = sharedCsContainer;
+        } else {
+            this.csContainer = new CSContainer(clusterName)
+                .withNetwork(network)
+                .withNetworkAliases(CSContainer.NAME)
+                .withResourceProfile(spec.zookeeperResources());
+        }
 
         this.bookieContainers = Maps.newTreeMap();
         this.brokerContainers = Maps.newTreeMap();
         this.workerContainers = Maps.newTreeMap();
 
-        this.proxyContainer = new ProxyContainer(clusterName, ProxyContainer.NAME)
+        // create proxies
+        this.proxyContainers = runNumContainers("proxy", spec.numProxies(), (name) -> new ProxyContainer(clusterName, hostname(name))
             .withNetwork(network)
-            .withNetworkAliases("pulsar-proxy")
-            .withEnv("zkServers", ZKContainer.NAME)
-            .withEnv("zookeeperServers", ZKContainer.NAME)
+            .withNetworkAliases(hostname(name))
+            .withEnv("zkServers", zkHost)
+            .withEnv("zookeeperServers", zkHost)
             .withEnv("configurationStoreServers", CSContainer.NAME + ":" + CS_PORT)
-            .withEnv("clusterName", clusterName);
+            .withEnv("clusterName", clusterName)
+            .withResourceProfile(spec.proxyResources()));
+        // keep the well known alias of the proxy for services that connect to the cluster from the network
+        proxyContainers.values().stream().findFirst()
+            .ifPresent(proxy -> proxy.withNetworkAliases(hostname(ProxyContainer.NAME)));
 
         // create bookies
-        bookieContainers.putAll(
-                runNumContainers("bookie", spec.numBookies(), (name) -> new BKContainer(clusterName, name)
-                        .withNetwork(network)
-                        .withNetworkAliases(name)
-                        .withEnv("zkServers", ZKContainer.NAME)
-                        .withEnv("useHostNameAsBookieID", "true")
-                        // Disable fsyncs for tests since they're slow within the containers
-                        .withEnv("journalSyncData", "false")
-                        .withEnv("journalMaxGroupWaitMSec", "0")
-                        .withEnv("clusterName", clusterName)
-                        .withEnv("diskUsageThreshold", "0.99")
-                )
-        );
+        bookieContainers.putAll(runNumContainers("bookie", 0, spec.numBookies(), this::newBookieContainer));
+        nextBookieIndex = spec.numBookies();
 
         // create brokers
-        brokerContainers.putAll(
-                runNumContainers("broker", spec.numBrokers(), (name) -> new BrokerContainer(clusterName, name)
-                        .withNetwork(network)
-                        .withNetworkAliases(name)
-                        .withEnv("zkServers", ZKContainer.NAME)
-                        .withEnv("zookeeperServers", ZKContainer.NAME)
-                        .withEnv("configurationStoreServers", CSContainer.NAME + ":" + CS_PORT)
-                        .withEnv("clusterName", clusterName)
-                        .withEnv("brokerServiceCompactionMonitorIntervalInSeconds", "1")
-                        // used in s3 tests
-                        .withEnv("AWS_ACCESS_KEY_ID", "accesskey")
-                        .withEnv("AWS_SECRET_KEY", "secretkey")
-                )
-        );
+        brokerContainers.putAll(runNumContainers("broker", 0, spec.numBrokers(), this::newBrokerContainer));
+        nextBrokerIndex = spec.numBrokers();
 
         spec.classPathVolumeMounts.forEach((key, value) -> {
             zkContainer.withClasspathResourceMapping(key, value, BindMode.READ_WRITE);
-            proxyContainer.withClasspathResourceMapping(key, value, BindMode.READ_WRITE);
-
-            bookieContainers.values().forEach(c -> c.withClasspathResourceMapping(key, value, BindMode.READ_WRITE));
-            brokerContainers.values().forEach(c -> c.withClasspathResourceMapping(key, value, BindMode.READ_WRITE));
+            proxyContainers.values().forEach(c -> c.withClasspathResourceMapping(key, value, BindMode.READ_WRITE));
             workerContainers.values().forEach(c -> c.withClasspathResourceMapping(key, value, BindMode.READ_WRITE));
         });
 
     }
 
+    private String hostname(String name) {
+        return hostnamePrefix + name;
+    }
+
+    /**
+     * Returns the hostname of the broker services started on the running cluster are configured
+     * with, which is a live broker.
+     */
+    private synchronized String serviceBrokerHostname() {
+        if (!brokerContainers.containsKey(serviceBrokerName)) {
+            checkState(!brokerContainers.isEmpty(), "No broker of cluster " + clusterName + " is alive");
+            serviceBrokerName = brokerContainers.keySet().iterator().next();
+        }
+        return hostname(serviceBrokerName);
+    }
+
+    private BKContainer newBookieContainer(String name) {
+        BKContainer bookie = new BKContainer(clusterName, hostname(name))
+                .withNetwork(network)
+                .withNetworkAliases(hostname(name))
+                .withEnv("zkServers", zkHost)
+                .withEnv("useHostNameAsBookieID", "true")
+                .withEnv("clusterName", clusterName)
+                .withEnv("diskUsageThreshold", "0.99")
+                .withStorageMode(spec.bookieStorageMode())
+                .withResourceProfile(spec.bookieResources());
+        spec.classPathVolumeMounts.forEach((key, value) ->
+                bookie.withClasspathResourceMapping(key, value, BindMode.READ_WRITE));
+        return bookie;
+    }
+
+    private BrokerContainer newBrokerContainer(String name) {
+        BrokerContainer broker = new BrokerContainer(clusterName, hostname(name))
+                .withNetwork(network)
+                .withNetworkAliases(hostname(name))
+                .withEnv("zkServers", zkHost)
+                .withEnv("zookeeperServers", zkHost)
+                .withEnv("configurationStoreServers", CSContainer.NAME + ":" + CS_PORT)
+                .withEnv("clusterName", clusterName)
+                .withEnv("brokerServiceCompactionMonitorIntervalInSeconds", "1")
+                .withEnv("managedLedgerDefaultEnsembleSize", String.valueOf(MANAGED_LEDGER_ENSEMBLE_SIZE))
+                // used in s3 tests
+                .withEnv("AWS_ACCESS_KEY_ID", "accesskey")
+                .withEnv("AWS_SECRET_KEY", "secretkey")
+                .withResourceProfile(spec.brokerResources());
+        spec.classPathVolumeMounts.forEach((key, value) ->
+                broker.withClasspathResourceMapping(key, value, BindMode.READ_WRITE));
+        return broker;
+    }
+
+    /**
+     * Returns the binary service url of the cluster.
+     *
+     * <p>The url lists all the proxies, so the client balances its connections across them.
+     * Brokers answer lookups with their hostname on the cluster network, which clients outside
+     * the network can't resolve, so a cluster used from outside the network needs a proxy.
+     *
+     * @return the multi-host binary service url of the cluster.
+     * @throws IllegalStateException if the cluster has no proxies.
+     */
     public String getPlainTextServiceUrl() {
-        return proxyContainer.getPlainTextServiceUrl();
+        checkState(!proxyContainers.isEmpty(),
+                "Cluster " + clusterName + " has no proxies, its brokers are not reachable from outside its network");
+        return getMultiHostUrl("pulsar://", getProxies(), BROKER_PORT);
     }
 
+    /**
+     * Returns the http service url of the first proxy, or of the first broker when
+     * the cluster has no proxies.
+     *
+     * <p>Without proxies, only the admin operations the broker serves itself work from outside
+     * the network, topic operations redirected to the owner of the topic don't.
+     *
+     * @return the http service url of the cluster.
+     */
     public String getHttpServiceUrl() {
-        return proxyContainer.getHttpServiceUrl();
+        if (proxyContainers.isEmpty()) {
+            return getMultiHostUrl("http://", Collections.singletonList(getBroker(0)), BROKER_HTTP_PORT);
+        }
+        return getProxy().getHttpServiceUrl();
     }
 
     public String getAllBrokersHttpServiceUrl() {
-        String multiUrl = "http://";
-        Iterator<BrokerContainer> brokers = getBrokers().iterator();
-        while (brokers.hasNext()) {
-            BrokerContainer broker = brokers.next();
-            multiUrl += broker.getContainerIpAddress() + ":" + broker.getMappedPort(BROKER_HTTP_PORT);
-            if (brokers.hasNext()) {
+        return getMultiHostUrl("http://", getBrokers(), BROKER_HTTP_PORT);
+    }
+
+    public String getAllProxiesHttpServiceUrl() {
+        return getMultiHostUrl("http://", getProxies(), BROKER_HTTP_PORT);
+    }
+
+    private static String getMultiHostUrl(String scheme, Collection<? extends GenericContainer> containers, int port) {
+        String multiUrl = scheme;
+        Iterator<? extends GenericContainer> iterator = containers.iterator();
+        while (iterator.hasNext()) {
+            GenericContainer container = iterator.next();
+            multiUrl += container.getContainerIpAddress() + ":" + container.getMappedPort(port);
+            if (iterator.hasNext()) {
                 multiUrl += ",";
             }
         }
@@ -212,52 +345,143 @@ public class PulsarCluster {
         return externalServices;
     }
 
+    /**
+     * Returns the wall clock time spent in each startup phase of the last {@link #start()}.
+     *
+     * <p>Containers within a phase are started concurrently, so the time of a phase is
+     * the critical path through it, i.e. the time of its slowest container.
+     *
+     * @return the startup phases in the order they were run, with their time in millis.
+     */
+    public Map<String, Long> getStartupPhaseTimes() {
+        return Collections.unmodifiableMap(startupPhaseTimes);
+    }
+
     public void start() throws Exception {
-        // start the local zookeeper
-        zkContainer.start();
-        log.info("Successfully started local zookeeper container.");
+        startupPhaseTimes.clear();
+        startupPhaseContainers.clear();
+        long startTime = System.nanoTime();
+
+        PulsarClusterSnapshot snapshot = spec.enableSnapshot() ? PulsarClusterSnapshot.forSpec(spec) : null;
+        boolean restoreSnapshot = null != snapshot && snapshot.exists();
+        if (restoreSnapshot) {
+            snapshot.restore(zkContainer, ZKContainer.NAME);
+            snapshot.restore(csContainer, CSContainer.NAME);
+        }
 
-        // start the configuration store
-        csContainer.start();
-        log.info("Successfully started configuration store container.");
+        // start the local zookeeper and the configuration store, they don't depend on each other
+        runStartupPhase("metadata-store", sharedConfigurationStore
+                ? Collections.singletonList(zkContainer) : Arrays.asList(zkContainer, csContainer));
+        log.info("Successfully started local zookeeper and configuration store containers.");
 
-        // init the cluster
-        zkContainer.execCmd(
-            "bin/init-cluster.sh");
-        log.info("Successfully initialized the cluster.");
+        if (restoreSnapshot) {
+            log.info("Skip initializing the cluster, its metadata was restored from snapshot {}",
+                    snapshot.getSnapshotDir());
+        } else {
+            // init the cluster
+            runStartupPhase("init-cluster", () -> zkContainer.execCmd("bin/init-cluster.sh"));
+            log.info("Successfully initialized the cluster.");
+
+            if (null != snapshot) {
+                // capture the metadata before bookies and brokers register themselves
+                runStartupPhase("capture-snapshot", () -> snapshot.capture(
+                        ImmutableMap.of(ZKContainer.NAME, zkContainer, CSContainer.NAME, csContainer)));
+            }
+        }
 
         // start bookies
-        bookieContainers.values().forEach(BKContainer::start);
+        runStartupPhase("bookies", bookieContainers.values());
         log.info("Successfully started {} bookie containers.", bookieContainers.size());
 
         // start brokers
-        this.startAllBrokers();
+        runStartupPhase("brokers", brokerContainers.values());
         log.info("Successfully started {} broker containers.", brokerContainers.size());
 
-        // create proxy
-        proxyContainer.start();
-        log.info("Successfully started pulsar proxy.");
-
-        log.info("Pulsar cluster {} is up running:", clusterName);
-        log.info("\tBinary Service Url : {}", getPlainTextServiceUrl());
-        log.info("\tHttp Service Url : {}", getHttpServiceUrl());
-
+        // start the proxy, the presto worker and the external services, they all only depend on the brokers
+        List<GenericContainer<?>> edgeContainers = new ArrayList<>(proxyContainers.values());
         if (enablePrestoWorker) {
             log.info("Starting Presto Worker");
-            prestoWorkerContainer.start();
+            edgeContainers.add(prestoWorkerContainer);
         }
-
-        // start external services
         this.externalServices = spec.externalServices;
         if (null != externalServices) {
-            externalServices.entrySet().parallelStream().forEach(service -> {
-                GenericContainer<?> serviceContainer = service.getValue();
+            externalServices.forEach((name, serviceContainer) -> {
                 serviceContainer.withNetwork(network);
-                serviceContainer.withNetworkAliases(service.getKey());
-                serviceContainer.start();
-                log.info("Successfully start external service {}.", service.getKey());
+                serviceContainer.withNetworkAliases(name);
+                edgeContainers.add(serviceContainer);
             });
         }
+        runStartupPhase("proxy-and-services", edgeContainers);
+        log.info("Successfully started {} pulsar proxies and {} external services.",
+                proxyContainers.size(), null == externalServices ? 0 : externalServices.size());
+
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        log.info("Pulsar cluster {} is up running in {} ms:", clusterName, totalMillis);
+        if (!proxyContainers.isEmpty()) {
+            log.info("\tBinary Service Url : {}", getPlainTextServiceUrl());
+        }
+        log.info("\tHttp Service Url : {}", getHttpServiceUrl());
+        startupPhaseTimes.forEach((phase, millis) -> log.info("\tStartup phase {} : {} ms", phase, millis));
+        new PulsarClusterStartupReport(clusterName, totalMillis, startupPhaseTimes, startupPhaseContainers).write();
+    }
+
+    private void runStartupPhase(String phase, Collection<? extends GenericContainer> containers) {
+        startupPhaseContainers.put(phase, containers.stream()
+                .filter(container -> container instanceof PulsarContainer)
+                .map(container -> (PulsarContainer<?>) container)
+                .collect(Collectors.toList()));
+        runStartupPhase(phase, () -> startInParallel(containers));
+    }
+
+    private void runStartupPhase(String phase, StartupAction action) {
+        long phaseStart = System.nanoTime();
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to run startup phase " + phase + " of cluster " + clusterName, e);
+        }
+        long phaseMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStart);
+        startupPhaseTimes.put(phase, phaseMillis);
+        log.info("Startup phase {} of cluster {} took {} ms", phase, clusterName, phaseMillis);
+    }
+
+    /**
+     * Start the given containers concurrently and wait for all of them to be up.
+     *
+     * <p>A dedicated thread is used per container rather than the common fork join pool,
+     * since the pool might have fewer threads than containers on small CI machines and
+     * the containers mostly block in their wait strategies.
+     */
+    private static void startInParallel(Collection<? extends GenericContainer> containers) {
+        if (containers.isEmpty()) {
+            return;
+        }
+        if (containers.size() == 1) {
+            containers.iterator().next().start();
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(containers.size(),
+                new DefaultThreadFactory("pulsar-cluster-start"));
+        try {
+            List<CompletableFuture<Void>> futures = containers.stream()
+                    .map(container -> CompletableFuture.runAsync(container::start, executor))
+                    .collect(Collectors.toList());
+            FutureUtil.waitForAll(futures).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface StartupAction {
+        void run() throws Exception;
     }
 
     public void startService(String networkAlias,
@@ -280,8 +504,15 @@ public class PulsarCluster {
     private static <T extends PulsarContainer> Map<String, T> runNumContainers(String serviceName,
                                                                                int numContainers,
                                                                                Function<String, T> containerCreator) {
+        return runNumContainers(serviceName, 0, numContainers, containerCreator);
+    }
+
+    private static <T extends PulsarContainer> Map<String, T> runNumContainers(String serviceName,
+                                                                               int startIndex,
+                                                                               int numContainers,
+                                                                               Function<String, T> containerCreator) {
         Map<String, T> containers = Maps.newTreeMap();
-        for (int i = 0; i < numContainers; i++) {
+        for (int i = startIndex; i < startIndex + numContainers; i++) {
             String name = "pulsar-" + serviceName + "-" + i;
             T container = containerCreator.apply(name);
             containers.put(name, container);
@@ -295,6 +526,8 @@ public class PulsarCluster {
 
     public synchronized void stop() {
 
+        admin.close();
+
         List<GenericContainer> containers = new ArrayList<>();
 
         containers.addAll(workerContainers.values());
@@ -305,10 +538,8 @@ public class PulsarCluster {
             containers.addAll(externalServices.values());
         }
 
-        if (null != proxyContainer) {
-            containers.add(proxyContainer);
-        }
-        if (null != csContainer) {
+        containers.addAll(proxyContainers.values());
+        if (null != csContainer && !sharedConfigurationStore) {
             containers.add(csContainer);
         }
         if (null != zkContainer) {
@@ -322,8 +553,19 @@ public class PulsarCluster {
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
 
+        // collect the artifacts of all the containers at once, rather than each one as it stops
+        CompletableFuture.allOf(containers.stream()
+                .filter(container -> container instanceof ChaosContainer)
+                .map(container -> ((ChaosContainer<?>) container).collectArtifacts())
+                .toArray(CompletableFuture[]::new))
+                .join();
+
         containers.parallelStream().forEach(GenericContainer::stop);
 
+        if (sharedConfigurationStore) {
+            // the network is owned by the multi cluster
+            return;
+        }
         try {
             network.close();
         } catch (Exception e) {
@@ -338,14 +580,14 @@ public class PulsarCluster {
     public void startPrestoWorker(String offloadDriver, String offloadProperties) {
         log.info("[startPrestoWorker] offloadDriver: {}, offloadProperties: {}", offloadDriver, offloadProperties);
         if (null == prestoWorkerContainer) {
-            prestoWorkerContainer = new PrestoWorkerContainer(clusterName, PrestoWorkerContainer.NAME)
+            prestoWorkerContainer = new PrestoWorkerContainer(clusterName, hostname(PrestoWorkerContainer.NAME))
                     .withNetwork(network)
-                    .withNetworkAliases(PrestoWorkerContainer.NAME)
+                    .withNetworkAliases(hostname(PrestoWorkerContainer.NAME))
                     .withEnv("clusterName", clusterName)
-                    .withEnv("zkServers", ZKContainer.NAME)
-                    .withEnv("zookeeperServers", ZKContainer.NAME + ":" + ZKContainer.ZK_PORT)
-                    .withEnv("pulsar.zookeeper-uri", ZKContainer.NAME + ":" + ZKContainer.ZK_PORT)
-                    .withEnv("pulsar.broker-service-url", "http://pulsar-broker-0:8080");
+                    .withEnv("zkServers", zkHost)
+                    .withEnv("zookeeperServers", zkHost + ":" + ZK_PORT)
+                    .withEnv("pulsar.zookeeper-uri", zkHost + ":" + ZK_PORT)
+                    .withEnv("pulsar.broker-service-url", "http://" + serviceBrokerHostname() + ":8080");
             if (offloadDriver != null && offloadProperties != null) {
                 log.info("[startPrestoWorker] set offload env offloadDriver: {}, offloadProperties: {}",
                         offloadDriver, offloadProperties);
@@ -381,42 +623,43 @@ public class PulsarCluster {
     }
 
     private void startFunctionWorkersWithProcessContainerFactory(String suffix, int numFunctionWorkers) {
-        String serviceUrl = "pulsar://pulsar-broker-0:" + PulsarContainer.BROKER_PORT;
-        String httpServiceUrl = "http://pulsar-broker-0:" + PulsarContainer.BROKER_HTTP_PORT;
+        String serviceUrl = "pulsar://" + serviceBrokerHostname() + ":" + PulsarContainer.BROKER_PORT;
+        String httpServiceUrl = "http://" + serviceBrokerHostname() + ":" + PulsarContainer.BROKER_HTTP_PORT;
         workerContainers.putAll(runNumContainers(
             "functions-worker-process-" + suffix,
             numFunctionWorkers,
-            (name) -> new WorkerContainer(clusterName, name)
+            (name) -> new WorkerContainer(clusterName, hostname(name))
                 .withNetwork(network)
-                .withNetworkAliases(name)
+                .withNetworkAliases(hostname(name))
                 // worker settings
-                .withEnv("PF_workerId", name)
-                .withEnv("PF_workerHostname", name)
+                .withEnv("PF_workerId", hostname(name))
+                .withEnv("PF_workerHostname", hostname(name))
                 .withEnv("PF_workerPort", "" + PulsarContainer.BROKER_HTTP_PORT)
                 .withEnv("PF_pulsarFunctionsCluster", clusterName)
                 .withEnv("PF_pulsarServiceUrl", serviceUrl)
                 .withEnv("PF_pulsarWebServiceUrl", httpServiceUrl)
                 // script
                 .withEnv("clusterName", clusterName)
-                .withEnv("zookeeperServers", ZKContainer.NAME)
+                .withEnv("zookeeperServers", zkHost)
                 // bookkeeper tools
-                .withEnv("zkServers", ZKContainer.NAME)
+                .withEnv("zkServers", zkHost)
+                .withResourceProfile(spec.functionWorkerResources())
         ));
         this.startWorkers();
     }
 
     private void startFunctionWorkersWithThreadContainerFactory(String suffix, int numFunctionWorkers) {
-        String serviceUrl = "pulsar://pulsar-broker-0:" + PulsarContainer.BROKER_PORT;
-        String httpServiceUrl = "http://pulsar-broker-0:" + PulsarContainer.BROKER_HTTP_PORT;
+        String serviceUrl = "pulsar://" + serviceBrokerHostname() + ":" + PulsarContainer.BROKER_PORT;
+        String httpServiceUrl = "http://" + serviceBrokerHostname() + ":" + PulsarContainer.BROKER_HTTP_PORT;
         workerContainers.putAll(runNumContainers(
             "functions-worker-thread-" + suffix,
             numFunctionWorkers,
-            (name) -> new WorkerContainer(clusterName, name)
+            (name) -> new WorkerContainer(clusterName, hostname(name))
                 .withNetwork(network)
-                .withNetworkAliases(name)
+                .withNetworkAliases(hostname(name))
                 // worker settings
-                .withEnv("PF_workerId", name)
-                .withEnv("PF_workerHostname", name)
+                .withEnv("PF_workerId", hostname(name))
+                .withEnv("PF_workerHostname", hostname(name))
                 .withEnv("PF_workerPort", "" + PulsarContainer.BROKER_HTTP_PORT)
                 .withEnv("PF_pulsarFunctionsCluster", clusterName)
                 .withEnv("PF_pulsarServiceUrl", serviceUrl)
@@ -425,9 +668,10 @@ public class PulsarCluster {
                 .withEnv("PF_functionRuntimeFactoryConfigs_threadGroupName", "pf-container-group")
                 // script
                 .withEnv("clusterName", clusterName)
-                .withEnv("zookeeperServers", ZKContainer.NAME)
+                .withEnv("zookeeperServers", zkHost)
                 // bookkeeper tools
-                .withEnv("zkServers", ZKContainer.NAME)
+                .withEnv("zkServers", zkHost)
+                .withResourceProfile(spec.functionWorkerResources())
         ));
         this.startWorkers();
     }
@@ -483,10 +727,14 @@ public class PulsarCluster {
         return containerList.get(0);
     }
 
+    /**
+     * Returns the container at the given index among the live containers, whose names have gaps
+     * once containers are removed from the running cluster.
+     */
     private <T> T getAnyContainer(Map<String, T> containers, String serviceName, int index) {
         checkArgument(!containers.isEmpty(), "No " + serviceName + " is alive");
         checkArgument((index >= 0 && index < containers.size()), "Index : " + index + " is out range");
-        return containers.get(serviceName.toLowerCase() + "-" + index);
+        return new ArrayList<>(containers.values()).get(index);
     }
 
     public Collection<BrokerContainer> getBrokers() {
@@ -494,7 +742,28 @@ public class PulsarCluster {
     }
 
     public ProxyContainer getProxy() {
-        return proxyContainer;
+        return getProxy(0);
+    }
+
+    public ProxyContainer getProxy(int index) {
+        return getAnyContainer(proxyContainers, "pulsar-proxy", index);
+    }
+
+    public Collection<ProxyContainer> getProxies() {
+        return proxyContainers.values();
+    }
+
+    /**
+     * Returns the connection and byte counters of every proxy of the cluster.
+     *
+     * @return the counters of each proxy.
+     */
+    public List<ProxyStats> getProxyStats() throws IOException {
+        List<ProxyStats> stats = new ArrayList<>(proxyContainers.size());
+        for (ProxyContainer proxy : proxyContainers.values()) {
+            stats.add(proxy.getProxyStats());
+        }
+        return stats;
     }
 
     public Collection<BKContainer> getBookies() {
@@ -526,7 +795,7 @@ public class PulsarCluster {
     }
 
     public void startAllBrokers() {
-        brokerContainers.values().forEach(BrokerContainer::start);
+        startInParallel(brokerContainers.values());
     }
 
     public void stopAllBookies() {
@@ -534,7 +803,175 @@ public class PulsarCluster {
     }
 
     public void startAllBookies() {
-        bookieContainers.values().forEach(BKContainer::start);
+        startInParallel(bookieContainers.values());
+    }
+
+    /**
+     * Add brokers to the running cluster.
+     *
+     * <p>New brokers are named after the last broker ever added, so the names of removed
+     * brokers are never reused.
+     *
+     * @param numBrokers number of brokers to add.
+     * @return the added brokers, once all of them are up.
+     */
+    public synchronized List<BrokerContainer> addBrokers(int numBrokers) {
+        Map<String, BrokerContainer> brokers =
+                runNumContainers("broker", nextBrokerIndex, numBrokers, this::newBrokerContainer);
+        nextBrokerIndex += numBrokers;
+        startAddedContainers(brokers);
+        brokerContainers.putAll(brokers);
+        log.info("Added brokers {} to cluster {}", brokers.keySet(), clusterName);
+        return new ArrayList<>(brokers.values());
+    }
+
+    /**
+     * Remove a broker from the running cluster.
+     *
+     * <p>A graceful removal sends SIGTERM to the broker and lets it unload its bundles before
+     * the container is removed, a non graceful removal kills the broker right away, leaving its
+     * bundles to be reassigned once its zookeeper session expires.
+     *
+     * @param name name of the broker, e.g. `pulsar-broker-1`.
+     * @param graceful whether to stop the broker gracefully.
+     * @return the time in millis it took to stop the broker.
+     */
+    public synchronized long removeBroker(String name, boolean graceful) {
+        BrokerContainer broker = brokerContainers.get(name);
+        checkArgument(null != broker, "No broker " + name + " in cluster " + clusterName);
+        checkArgument(brokerContainers.size() > 1, "Can't remove the last broker of cluster " + clusterName);
+        checkArgument(!name.equals(serviceBrokerName) || (null == prestoWorkerContainer && workerContainers.isEmpty()),
+                "Can't remove broker " + name + ", the presto worker and function workers of cluster "
+                        + clusterName + " are configured with it");
+        brokerContainers.remove(name);
+        long startTime = System.nanoTime();
+        if (graceful) {
+            broker.getDockerClient().stopContainerCmd(broker.getContainerId())
+                    .withTimeout(GRACEFUL_STOP_TIMEOUT_SECONDS)
+                    .exec();
+        }
+        broker.stop();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        log.info("Removed broker {} from cluster {} in {} ms (graceful = {})", name, clusterName, millis, graceful);
+        return millis;
+    }
+
+    /**
+     * Wait until the load manager assigned at least the given number of namespace bundles
+     * to a broker, e.g. to measure how long a broker added by {@link #addBrokers(int)} takes
+     * to take over traffic.
+     *
+     * @param name name of the broker.
+     * @param minBundles number of bundles the broker should own.
+     * @param timeout time to wait.
+     * @param unit unit of the time to wait.
+     * @return the time in millis it took for the broker to own the bundles.
+     * @throws TimeoutException if the broker doesn't own the bundles in time.
+     */
+    public long awaitBundleOwnership(String name, int minBundles, long timeout, TimeUnit unit) throws Exception {
+        checkArgument(brokerContainers.containsKey(name), "No broker " + name + " in cluster " + clusterName);
+        String brokerId = hostname(name) + ":" + BROKER_HTTP_PORT;
+        long startTime = System.nanoTime();
+        long deadline = startTime + unit.toNanos(timeout);
+        PulsarAdmin pulsarAdmin = admin.getPulsarAdmin();
+        while (true) {
+            int ownedBundles = pulsarAdmin.brokers().getOwnedNamespaces(clusterName, brokerId).size();
+            if (ownedBundles >= minBundles) {
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+                log.info("Broker {} owns {} bundles after {} ms", name, ownedBundles, millis);
+                return millis;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new TimeoutException("Broker " + name + " owns " + ownedBundles
+                        + " bundles after " + timeout + " " + unit + ", expected " + minBundles);
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+    }
+
+    /**
+     * Returns the name of the broker owning the given topic, e.g. to kill it with
+     * {@link #removeBroker(String, boolean)}.
+     *
+     * @param topic the topic, which is loaded by the lookup if no broker owns it yet.
+     * @return the name of the broker, e.g. `pulsar-broker-1`.
+     */
+    public synchronized String getTopicOwner(String topic) throws Exception {
+        String host = URI.create(admin.getPulsarAdmin().lookups().lookupTopic(topic)).getHost();
+        return brokerContainers.keySet().stream()
+                .filter(name -> hostname(name).equals(host))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Topic " + topic + " is owned by unknown broker " + host));
+    }
+
+    /**
+     * Add bookies to the running cluster.
+     *
+     * @param numBookies number of bookies to add.
+     * @return the added bookies, once all of them are up.
+     */
+    public synchronized List<BKContainer> addBookies(int numBookies) {
+        Map<String, BKContainer> bookies =
+                runNumContainers("bookie", nextBookieIndex, numBookies, this::newBookieContainer);
+        nextBookieIndex += numBookies;
+        startAddedContainers(bookies);
+        bookieContainers.putAll(bookies);
+        log.info("Added bookies {} to cluster {}", bookies.keySet(), clusterName);
+        return new ArrayList<>(bookies.values());
+    }
+
+    /**
+     * Decommission a bookie of the running cluster.
+     *
+     * <p>The bookie is stopped and `bookkeeper shell decommissionbookie` is run from one of the
+     * remaining bookies. The command returns once auto-recovery re-replicated all the ledgers
+     * of the decommissioned bookie, so its duration is the re-replication time.
+     *
+     * <p>The ledgers can only be re-replicated if the remaining bookies can hold their ensembles,
+     * so a cluster keeps at least {@link #MANAGED_LEDGER_ENSEMBLE_SIZE} bookies.
+     *
+     * @param name name of the bookie, e.g. `pulsar-bookie-1`.
+     * @param timeout how long to wait for the re-replication.
+     * @param unit unit of the time to wait.
+     * @return the time in millis it took to re-replicate the ledgers of the bookie.
+     * @throws TimeoutException if the ledgers were not re-replicated in time.
+     */
+    public synchronized long decommissionBookie(String name, long timeout, TimeUnit unit) throws Exception {
+        BKContainer bookie = bookieContainers.get(name);
+        checkArgument(null != bookie, "No bookie " + name + " in cluster " + clusterName);
+        checkArgument(bookieContainers.size() - 1 >= MANAGED_LEDGER_ENSEMBLE_SIZE,
+                "Can't decommission bookie " + name + ", the remaining " + (bookieContainers.size() - 1)
+                        + " bookies of cluster " + clusterName + " can't hold ensembles of "
+                        + MANAGED_LEDGER_ENSEMBLE_SIZE + " bookies");
+        bookieContainers.remove(name);
+        bookie.stop();
+
+        BKContainer remainingBookie = getAnyContainer(bookieContainers, "pulsar-bookie");
+        long startTime = System.nanoTime();
+        try {
+            // the command waits for the re-replication without a deadline of its own
+            remainingBookie.execCmd("timeout", String.valueOf(Math.max(1, unit.toSeconds(timeout))),
+                    BOOKKEEPER_SCRIPT, "shell", "decommissionbookie", "-bookieid", hostname(name) + ":" + BOOKIE_PORT);
+        } catch (ContainerExecException e) {
+            if (null != e.getResult() && e.getResult().getExitCode() == TIMEOUT_EXIT_CODE) {
+                throw new TimeoutException("The ledgers of bookie " + name + " were not re-replicated after "
+                        + timeout + " " + unit);
+            }
+            throw e;
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        log.info("Decommissioned bookie {} of cluster {}, re-replicating its ledgers took {} ms",
+                name, clusterName, millis);
+        return millis;
+    }
+
+    private static void startAddedContainers(Map<String, ? extends GenericContainer> containers) {
+        try {
+            startInParallel(containers.values());
+        } catch (RuntimeException e) {
+            containers.values().forEach(GenericContainer::stop);
+            throw e;
+        }
     }
 
     public void stopZooKeeper() {
@@ -545,22 +982,35 @@ public class PulsarCluster {
         zkContainer.start();
     }
 
-    public ContainerExecResult createNamespace(String nsName) throws Exception {
-        return runAdminCommandOnAnyBroker(
-            "namespaces", "create", "public/" + nsName,
-            "--clusters", clusterName);
+    /**
+     * Returns the admin of the cluster. It talks to the cluster through a long-lived admin client,
+     * unless the spec opts into the cli mode.
+     *
+     * @return the admin of the cluster.
+     */
+    public ClusterAdmin getAdmin() {
+        return spec.adminCliMode() ? cliAdmin : admin;
+    }
+
+    /**
+     * Returns the admin of the cluster that runs `pulsar-admin` on any broker, for tests of the cli.
+     *
+     * @return the cli admin of the cluster.
+     */
+    public ClusterAdmin getCliAdmin() {
+        return cliAdmin;
+    }
+
+    public void createNamespace(String nsName) throws Exception {
+        getAdmin().createNamespace(nsName);
     }
 
-    public ContainerExecResult createPartitionedTopic(String topicName, int partitions) throws Exception {
-        return runAdminCommandOnAnyBroker(
-                "topics", "create-partitioned-topic", topicName,
-                "-p", String.valueOf(partitions));
+    public void createPartitionedTopic(String topicName, int partitions) throws Exception {
+        getAdmin().createPartitionedTopic(topicName, partitions);
     }
 
-    public ContainerExecResult enableDeduplication(String nsName, boolean enabled) throws Exception {
-        return runAdminCommandOnAnyBroker(
-            "namespaces", "set-deduplication", "public/" + nsName,
-            enabled ? "--enable" : "--disable");
+    public void enableDeduplication(String nsName, boolean enabled) throws Exception {
+        getAdmin().enableDeduplication(nsName, enabled);
     }
 
 }
@@ -0,0 +1,295 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.topologies;
+
+import static org.apache.pulsar.tests.integration.topologies.PulsarTestBase.randomName;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.admin.PulsarAdmin;
+import org.apache.pulsar.tests.integration.utils.ArtifactCollector;
+
+/**
+ * A pool of running pulsar clusters shared across test suites.
+ *
+ * <p>Clusters are keyed by a normalized {@link PulsarClusterSpec}, which ignores the cluster name.
+ * A suite leases a cluster and creates its own namespaces on it, as it would on a new cluster. When
+ * the lease is closed, every topic, namespace and tenant the suite left behind is deleted, and the
+ * cluster is returned to the pool instead of being stopped. Suites that break a cluster
+ * (chaos, metadata teardown) use an exclusive lease, whose cluster is never returned.
+ *
+ * <p>The pool is disabled unless the system property {@link #ENABLED_PROPERTY} is set, in which
+ * case every lease gets a fresh cluster that is stopped when the lease is closed.
+ */
+@Slf4j
+public class PulsarClusterPool {
+
+    public static final String ENABLED_PROPERTY = "pulsar.clusterPool.enabled";
+
+    // the tenants and namespaces created when the cluster metadata is initialized, kept on release
+    private static final Set<String> SYSTEM_TENANTS = ImmutableSet.of("public", "pulsar");
+    private static final Set<String> SYSTEM_NAMESPACES = ImmutableSet.of("public/default", "public/functions");
+
+    private static final PulsarClusterPool INSTANCE = new PulsarClusterPool(Boolean.getBoolean(ENABLED_PROPERTY));
+
+    public static PulsarClusterPool getInstance() {
+        return INSTANCE;
+    }
+
+    private final boolean enabled;
+    private final Map<String, Deque<PulsarCluster>> idleClusters = new HashMap<>();
+    private final Set<PulsarCluster> pooledClusters = new HashSet<>();
+    private final AtomicInteger clusterIdGenerator = new AtomicInteger(0);
+    private boolean shutdownHookInstalled = false;
+
+    PulsarClusterPool(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Lease a cluster matching the given spec, cleaned up for the next suite when the lease is closed.
+     *
+     * @param spec pulsar cluster spec, its cluster name is ignored for pooled clusters.
+     * @return the lease, to be closed once the suite is done with the cluster.
+     */
+    public Lease lease(PulsarClusterSpec spec) throws Exception {
+        if (!enabled || !isPoolable(spec)) {
+            return leaseExclusive(spec);
+        }
+        String key = poolKey(spec);
+        PulsarCluster cluster = pollIdleCluster(key);
+        if (null == cluster) {
+            // a snapshot cluster keeps the name its metadata was captured with
+            cluster = startCluster(spec.enableSnapshot() ? spec : spec.toBuilder()
+                    .clusterName("pooled-" + clusterIdGenerator.getAndIncrement() + "-" + randomName(5))
+                    .build());
+            synchronized (this) {
+                pooledClusters.add(cluster);
+                installShutdownHook();
+            }
+        } else {
+            log.info("Leasing warm cluster {} for spec {}", cluster.getClusterName(), key);
+        }
+        return new Lease(this, key, cluster, false);
+    }
+
+    /**
+     * Lease a cluster for exclusive use. The cluster is stopped when the lease is closed.
+     *
+     * <p>A warm cluster matching the spec is handed out if there is one, otherwise a new
+     * cluster is started for the given spec.
+     *
+     * @param spec pulsar cluster spec.
+     * @return the lease, to be closed once the suite is done with the cluster.
+     */
+    public Lease leaseExclusive(PulsarClusterSpec spec) throws Exception {
+        return leaseExclusive(spec, true);
+    }
+
+    /**
+     * Lease a cluster for exclusive use. The cluster is stopped when the lease is closed.
+     *
+     * @param spec pulsar cluster spec.
+     * @param allowWarm whether a warm cluster can be handed out, suites asserting on the initial
+     *                  state of the cluster metadata need a new cluster.
+     * @return the lease, to be closed once the suite is done with the cluster.
+     */
+    public Lease leaseExclusive(PulsarClusterSpec spec, boolean allowWarm) throws Exception {
+        PulsarCluster cluster = null;
+        if (allowWarm && enabled && isPoolable(spec)) {
+            cluster = pollIdleCluster(poolKey(spec));
+            if (null != cluster) {
+                synchronized (this) {
+                    pooledClusters.remove(cluster);
+                }
+                log.info("Leasing warm cluster {} exclusively", cluster.getClusterName());
+            }
+        }
+        if (null == cluster) {
+            cluster = startCluster(spec);
+        }
+        return new Lease(this, null, cluster, true);
+    }
+
+    /**
+     * Stop all the idle clusters of the pool.
+     */
+    public void shutdown() {
+        List<PulsarCluster> clusters;
+        synchronized (this) {
+            clusters = new ArrayList<>(pooledClusters);
+            pooledClusters.clear();
+            idleClusters.clear();
+        }
+        clusters.parallelStream().forEach(PulsarCluster::stop);
+    }
+
+    private synchronized PulsarCluster pollIdleCluster(String key) {
+        Deque<PulsarCluster> clusters = idleClusters.get(key);
+        return null == clusters ? null : clusters.poll();
+    }
+
+    private synchronized void release(String key, PulsarCluster cluster) {
+        if (pooledClusters.contains(cluster)) {
+            idleClusters.computeIfAbsent(key, k -> new ArrayDeque<>()).add(cluster);
+            log.info("Returned cluster {} to the pool", cluster.getClusterName());
+        }
+    }
+
+    private void discard(PulsarCluster cluster) {
+        synchronized (this) {
+            pooledClusters.remove(cluster);
+        }
+        cluster.stop();
+    }
+
+    private void installShutdownHook() {
+        if (!shutdownHookInstalled) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "pulsar-cluster-pool-shutdown"));
+            shutdownHookInstalled = true;
+        }
+    }
+
+    private static PulsarCluster startCluster(PulsarClusterSpec spec) throws Exception {
+        PulsarCluster cluster = PulsarCluster.forSpec(spec);
+        try {
+            cluster.start();
+        } catch (Exception e) {
+            ArtifactCollector.getInstance().recordFailure();
+            cluster.stop();
+            throw e;
+        }
+        return cluster;
+    }
+
+    /**
+     * Clusters running external services can't be shared, since the services are container
+     * instances owned by the suite.
+     */
+    static boolean isPoolable(PulsarClusterSpec spec) {
+        return null == spec.externalServices() || spec.externalServices().isEmpty();
+    }
+
+    /**
+     * Returns the normalized key of a spec. Everything that shapes the cluster is part of the key,
+     * the cluster name and the container log flag are not.
+     */
+    static String poolKey(PulsarClusterSpec spec) {
+        return "bookies=" + spec.numBookies()
+                + ",brokers=" + spec.numBrokers()
+                + ",proxies=" + spec.numProxies()
+                + ",functionWorkers=" + spec.numFunctionWorkers()
+                + ",functionRuntime=" + spec.functionRuntimeType()
+                + ",presto=" + spec.enablePrestoWorker()
+                + ",mounts=" + new TreeMap<>(spec.classPathVolumeMounts())
+                + ",bookieStorageMode=" + spec.bookieStorageMode()
+                + ",zookeeperResources=" + spec.zookeeperResources()
+                + ",bookieResources=" + spec.bookieResources()
+                + ",brokerResources=" + spec.brokerResources()
+                + ",proxyResources=" + spec.proxyResources()
+                + ",functionWorkerResources=" + spec.functionWorkerResources()
+                + ",image=" + spec.pulsarTestImage()
+                + ",adminCliMode=" + spec.adminCliMode();
+    }
+
+    /**
+     * A lease of a cluster. A shared lease has a tenant and a namespace reserved to its holder, an
+     * exclusive lease has none, since its holder owns the whole cluster.
+     */
+    public static class Lease implements AutoCloseable {
+
+        private final PulsarClusterPool pool;
+        private final String key;
+        @Getter
+        private final PulsarCluster cluster;
+        @Getter
+        private final boolean exclusive;
+        private boolean closed = false;
+
+        private Lease(PulsarClusterPool pool, String key, PulsarCluster cluster, boolean exclusive) {
+            this.pool = pool;
+            this.key = key;
+            this.cluster = cluster;
+            this.exclusive = exclusive;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (exclusive) {
+                cluster.stop();
+                return;
+            }
+            try {
+                cleanUp();
+            } catch (Exception e) {
+                log.warn("Failed to clean up cluster {}, discarding the cluster", cluster.getClusterName(), e);
+                pool.discard(cluster);
+                return;
+            }
+            pool.release(key, cluster);
+        }
+
+        /**
+         * Delete everything the holder created, suites write to `public/default` and to namespaces
+         * of their own.
+         */
+        private void cleanUp() throws Exception {
+            PulsarAdmin admin = cluster.getAdmin().getPulsarAdmin();
+            for (String tenant : admin.tenants().getTenants()) {
+                if ("pulsar".equals(tenant)) {
+                    // the system namespaces of the brokers and function workers
+                    continue;
+                }
+                for (String ns : admin.namespaces().getNamespaces(tenant)) {
+                    for (String topic : admin.topics().getPartitionedTopicList(ns)) {
+                        admin.topics().deletePartitionedTopic(topic, true);
+                    }
+                    for (String topic : admin.topics().getList(ns)) {
+                        admin.topics().delete(topic, true);
+                    }
+                    if (!SYSTEM_NAMESPACES.contains(ns)) {
+                        admin.namespaces().deleteNamespace(ns);
+                    }
+                }
+                if (!SYSTEM_TENANTS.contains(tenant)) {
+                    admin.tenants().deleteTenant(tenant);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.topologies;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.pulsar.tests.integration.containers.PulsarContainer;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.utility.MountableFile;
+
+/**
+ * A locally cached snapshot of the metadata of an initialized pulsar cluster.
+ *
+ * <p>The snapshot holds the data directories of the local zookeeper and of the configuration
+ * store, taken right after `bin/init-cluster.sh` ran. Restoring it before the metadata stores
+ * are started lets a cluster skip the metadata initialization on later runs.
+ *
+ * <p>Bookies are not part of the snapshot: their registrations are ephemeral and their cookies
+ * are written on first boot, so the snapshot is taken before any bookie is started and bookies
+ * always start from empty directories.
+ *
+ * <p>Snapshots are keyed by the normalized spec, so every cluster of the same shape shares one.
+ * The cluster name is part of the metadata, so the suites boot snapshot clusters under the fixed
+ * {@link #CLUSTER_NAME}. The cache keeps the {@link #MAX_SNAPSHOTS_PROPERTY} most recently used
+ * snapshots and evicts the others.
+ */
+@Slf4j
+public class PulsarClusterSnapshot {
+
+    /**
+     * System property to override the directory where snapshots are cached.
+     */
+    public static final String SNAPSHOT_DIR_PROPERTY = "pulsar.clusterSnapshotDir";
+
+    /**
+     * System property to disable the snapshots of the clusters of the test suites, enabled by default.
+     */
+    public static final String ENABLED_PROPERTY = "pulsar.clusterSnapshot";
+
+    /**
+     * System property to override how many snapshots are cached, 10 by default.
+     */
+    public static final String MAX_SNAPSHOTS_PROPERTY = "pulsar.clusterSnapshotMaxCount";
+
+    /**
+     * The name of the clusters booted from snapshots, each cluster runs in its own network.
+     */
+    public static final String CLUSTER_NAME = "pulsar-snapshot";
+
+    private static final String DATA_DIR = "/pulsar/data";
+
+    private final File snapshotDir;
+
+    private PulsarClusterSnapshot(File snapshotDir) {
+        this.snapshotDir = snapshotDir;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"));
+    }
+
+    /**
+     * Returns the snapshot for the given spec.
+     *
+     * <p>The snapshot is keyed by the normalized spec of {@link PulsarClusterPool}, the cluster
+     * name and the id of the pulsar image, so that a rebuilt image never restores stale metadata.
+     *
+     * @param spec pulsar cluster spec.
+     * @return the snapshot of the cluster, which might not exist yet.
+     */
+    public static PulsarClusterSnapshot forSpec(PulsarClusterSpec spec) {
+        String key = String.join("|", PulsarClusterPool.poolKey(spec), spec.clusterName(),
+                getImageId(spec.pulsarTestImage()));
+        String hash = Hashing.sha256().hashString(key, UTF_8).toString().substring(0, 16);
+        return new PulsarClusterSnapshot(new File(getBaseDir(), "snapshot-" + hash));
+    }
+
+    private static File getBaseDir() {
+        return new File(System.getProperty(SNAPSHOT_DIR_PROPERTY,
+                Paths.get(System.getProperty("java.io.tmpdir"), "pulsar-cluster-snapshots").toString()));
+    }
+
+    private static String getImageId(String imageName) {
+        try {
+            return DockerClientFactory.instance().client().inspectImageCmd(imageName).exec().getId();
+        } catch (NotFoundException e) {
+            // the image will be pulled on first start, key the snapshot by its name only
+            return "";
+        }
+    }
+
+    public boolean exists() {
+        return snapshotDir.isDirectory();
+    }
+
+    public File getSnapshotDir() {
+        return snapshotDir;
+    }
+
+    /**
+     * Copy the snapshot of the given container into its data directory when it is created.
+     *
+     * @param container the container to restore, it must not be started yet.
+     * @param name the name the container was captured with.
+     */
+    public void restore(PulsarContainer<?> container, String name) {
+        File dataDir = new File(snapshotDir, name);
+        if (!dataDir.isDirectory()) {
+            throw new IllegalStateException("No snapshot of " + name + " found in " + snapshotDir);
+        }
+        container.withCopyFileToContainer(MountableFile.forHostPath(dataDir.getAbsolutePath()), DATA_DIR);
+        // the eviction keeps the most recently used snapshots
+        if (!snapshotDir.setLastModified(System.currentTimeMillis())) {
+            log.warn("Failed to touch snapshot {}", snapshotDir);
+        }
+        log.info("Restoring {} from snapshot {}", name, dataDir);
+    }
+
+    /**
+     * Capture the data directories of the given containers into the snapshot.
+     *
+     * <p>The snapshot is first written to a temporary directory and then moved in place,
+     * so concurrent runs never observe a partial snapshot.
+     *
+     * @param containers the containers to capture, keyed by the name to restore them with.
+     */
+    public void capture(Map<String, ? extends PulsarContainer> containers) throws IOException {
+        File parent = snapshotDir.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create snapshot directory " + parent);
+        }
+        Path tmpDir = Files.createTempDirectory(parent.toPath(), snapshotDir.getName() + ".tmp");
+        try {
+            for (Map.Entry<String, ? extends PulsarContainer> entry : containers.entrySet()) {
+                PulsarContainer container = entry.getValue();
+                try (InputStream dockerStream = container.getDockerClient()
+                        .copyArchiveFromContainerCmd(container.getContainerId(), DATA_DIR).exec()) {
+                    extract(dockerStream, tmpDir.resolve(entry.getKey()));
+                }
+            }
+            Files.move(tmpDir, snapshotDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            log.info("Captured snapshot of {} into {}", containers.keySet(), snapshotDir);
+            evictSnapshots();
+        } catch (IOException e) {
+            if (exists()) {
+                // another run captured the same snapshot concurrently
+                log.info("Snapshot {} was captured concurrently, discarding ours", snapshotDir);
+            } else {
+                throw e;
+            }
+        } finally {
+            deleteQuietly(tmpDir);
+        }
+    }
+
+    /**
+     * Delete the least recently used snapshots beyond the maximum count. A snapshot being restored
+     * concurrently by another run is copied into its containers before they start, so deleting it
+     * only affects later runs.
+     */
+    private static void evictSnapshots() {
+        int maxSnapshots = Integer.getInteger(MAX_SNAPSHOTS_PROPERTY, 10);
+        File[] snapshots = getBaseDir().listFiles(file -> file.isDirectory() && !file.getName().contains(".tmp"));
+        if (null == snapshots || snapshots.length <= maxSnapshots) {
+            return;
+        }
+        Arrays.sort(snapshots, Comparator.comparingLong(File::lastModified).reversed());
+        for (int i = maxSnapshots; i < snapshots.length; i++) {
+            log.info("Evicting snapshot {}", snapshots[i]);
+            deleteQuietly(snapshots[i].toPath());
+        }
+    }
+
+    private static void deleteQuietly(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", dir, e);
+        }
+    }
+
+    private static void extract(InputStream dockerStream, Path targetDir) throws IOException {
+        Path target = targetDir.toAbsolutePath().normalize();
+        try (TarArchiveInputStream stream = new TarArchiveInputStream(dockerStream)) {
+            TarArchiveEntry entry = stream.getNextTarEntry();
+            while (entry != null) {
+                // strip the leading `data/` directory of the archive
+                String name = entry.getName();
+                int slash = name.indexOf('/');
+                String relative = slash < 0 ? "" : name.substring(slash + 1);
+                Path output = target.resolve(relative).normalize();
+                if (!output.startsWith(target)) {
+                    throw new IOException("Invalid entry " + name + " in archive");
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(output);
+                } else if (entry.isFile()) {
+                    Files.createDirectories(output.getParent());
+                    Files.copy(stream, output, StandardCopyOption.REPLACE_EXISTING);
+                }
+                entry = stream.getNextTarEntry();
+            }
+        }
+    }
+}
@@ -29,13 +29,15 @@ import lombok.Setter;
 import lombok.Singular;
 import lombok.experimental.Accessors;
 
+import org.apache.pulsar.tests.integration.containers.BookieStorageMode;
 import org.apache.pulsar.tests.integration.containers.PulsarContainer;
+import org.apache.pulsar.tests.integration.containers.ResourceProfile;
 import org.testcontainers.containers.GenericContainer;
 
 /**
  * Spec to build a pulsar cluster.
  */
-@Builder
+@Builder(toBuilder = true)
 @Accessors(fluent = true)
 @Getter
 @Setter
@@ -119,6 +121,71 @@ public class PulsarClusterSpec {
     @Builder.Default
     Map<String, String> classPathVolumeMounts = new TreeMap<>();
 
+    /**
+     * Returns the flag whether to boot the cluster metadata from a locally cached snapshot.
+     *
+     * <p>After the first successful initialization of a cluster, the data of its zookeeper and
+     * configuration store is cached and later clusters with the same spec skip `init-cluster.sh`.
+     * Since the cluster name is part of the metadata, use a stable cluster name with this flag, the
+     * test suites use {@link PulsarClusterSnapshot#CLUSTER_NAME}.
+     *
+     * @return the flag whether to boot the cluster metadata from a snapshot.
+     */
+    @Default
+    boolean enableSnapshot = false;
+
+    /**
+     * Returns where the bookies store their journal and ledgers.
+     *
+     * @return the storage mode of the bookies.
+     */
+    @Default
+    BookieStorageMode bookieStorageMode = BookieStorageMode.OVERLAY;
+
+    /**
+     * Returns the resources of the local zookeeper and of the configuration store.
+     *
+     * @return the resources of the zookeeper containers, null for no limits.
+     */
+    ResourceProfile zookeeperResources;
+
+    /**
+     * Returns the resources of each bookie.
+     *
+     * @return the resources of the bookie containers, null for no limits.
+     */
+    ResourceProfile bookieResources;
+
+    /**
+     * Returns the resources of each broker.
+     *
+     * @return the resources of the broker containers, null for no limits.
+     */
+    ResourceProfile brokerResources;
+
+    /**
+     * Returns the resources of each proxy.
+     *
+     * @return the resources of the proxy containers, null for no limits.
+     */
+    ResourceProfile proxyResources;
+
+    /**
+     * Returns the resources of each function worker.
+     *
+     * @return the resources of the function worker containers, null for no limits.
+     */
+    ResourceProfile functionWorkerResources;
+
+    /**
+     * Returns the flag whether the admin operations of the cluster, e.g. {@link PulsarCluster#createNamespace(String)},
+     * run `pulsar-admin` inside a broker instead of using an admin client. Only suites that test the cli need it.
+     *
+     * @return the flag whether to run the admin operations through the cli.
+     */
+    @Default
+    boolean adminCliMode = false;
+
     /**
      * Pulsar Test Image Name
      *
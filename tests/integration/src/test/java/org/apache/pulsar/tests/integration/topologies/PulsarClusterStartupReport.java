@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.topologies;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.tests.integration.containers.PulsarContainer;
+import org.apache.pulsar.tests.integration.containers.StartupTimings;
+
+/**
+ * Report of the startup of a pulsar cluster, written as json and csv to
+ * `target/startup-reports/<cluster name>.{json,csv}`.
+ *
+ * <p>The startup phases of a cluster run one after the other and the containers of a phase start
+ * concurrently, so the critical path of the startup goes through the slowest container of each
+ * phase. The report breaks the startup of these containers down into the steps recorded by
+ * {@link StartupTimings}, each step being the time since the previous one.
+ */
+@Slf4j
+class PulsarClusterStartupReport {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private static final List<String> CONTAINER_PHASES = Arrays.asList(
+            StartupTimings.CREATED,
+            StartupTimings.STARTED,
+            StartupTimings.FIRST_LOG_LINE,
+            StartupTimings.PORT_OPEN,
+            StartupTimings.READY);
+
+    private final String clusterName;
+    private final long totalMillis;
+    private final Map<String, Long> phaseTimes;
+    private final Map<String, List<PulsarContainer<?>>> phaseContainers;
+
+    PulsarClusterStartupReport(String clusterName,
+                               long totalMillis,
+                               Map<String, Long> phaseTimes,
+                               Map<String, List<PulsarContainer<?>>> phaseContainers) {
+        this.clusterName = clusterName;
+        this.totalMillis = totalMillis;
+        this.phaseTimes = phaseTimes;
+        this.phaseContainers = phaseContainers;
+    }
+
+    /**
+     * Log the critical path of the startup and write the report, failures to write the report
+     * are only logged.
+     */
+    void write() {
+        List<Map<String, Object>> criticalPath = getCriticalPath();
+        log.info("Critical path of the startup of cluster {} ({} ms):", clusterName, totalMillis);
+        criticalPath.forEach(step -> log.info("\t{}", step));
+
+        String base = System.getProperty("maven.buildDirectory");
+        if (base == null) {
+            base = "target";
+        }
+        File directory = new File(base, "startup-reports");
+        if (!directory.exists() && !directory.mkdirs()) {
+            log.warn("Failed to create directory {} for the startup report", directory);
+            return;
+        }
+        try {
+            writeJson(new File(directory, clusterName + ".json"), criticalPath);
+            writeCsv(new File(directory, clusterName + ".csv"));
+        } catch (IOException e) {
+            log.warn("Failed to write the startup report of cluster {}", clusterName, e);
+        }
+    }
+
+    private List<Map<String, Object>> getCriticalPath() {
+        List<Map<String, Object>> criticalPath = new ArrayList<>();
+        phaseTimes.forEach((phase, millis) -> {
+            Map<String, Object> step = new LinkedHashMap<>();
+            step.put("phase", phase);
+            step.put("phase_ms", millis);
+            Optional<PulsarContainer<?>> slowest = phaseContainers.getOrDefault(phase, new ArrayList<>()).stream()
+                    .max(Comparator.comparingLong(c -> c.getStartupTimings().getMillis(
+                            StartupTimings.START, StartupTimings.READY)));
+            slowest.ifPresent(container -> {
+                step.put("container", container.getContainerName());
+                step.putAll(getSteps(container.getStartupTimings()));
+            });
+            criticalPath.add(step);
+        });
+        return criticalPath;
+    }
+
+    private static Map<String, Long> getSteps(StartupTimings timings) {
+        Map<String, Long> steps = new LinkedHashMap<>();
+        String previous = StartupTimings.START;
+        for (String phase : CONTAINER_PHASES) {
+            long millis = timings.getMillis(previous, phase);
+            if (millis >= 0) {
+                steps.put(phase.replace('-', '_') + "_ms", millis);
+                previous = phase;
+            }
+        }
+        return steps;
+    }
+
+    private void writeJson(File output, List<Map<String, Object>> criticalPath) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("cluster", clusterName);
+        report.put("total_ms", totalMillis);
+        report.put("critical_path", criticalPath);
+        List<Map<String, Object>> containers = new ArrayList<>();
+        phaseContainers.forEach((phase, phaseContainerList) -> phaseContainerList.forEach(container -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("phase", phase);
+            entry.put("container", container.getContainerName());
+            entry.put("offsets_ms", container.getStartupTimings().getOffsets());
+            containers.add(entry);
+        }));
+        report.put("containers", containers);
+        MAPPER.writeValue(output, report);
+        log.info("Wrote the startup report of cluster {} to {}", clusterName, output);
+    }
+
+    private void writeCsv(File output) throws IOException {
+        try (PrintWriter writer = new PrintWriter(output, UTF_8.name())) {
+            StringBuilder header = new StringBuilder("phase,container");
+            CONTAINER_PHASES.forEach(phase -> header.append(',').append(phase.replace('-', '_')).append("_ms"));
+            writer.println(header);
+            phaseContainers.forEach((phase, phaseContainerList) -> phaseContainerList.forEach(container -> {
+                Map<String, Long> offsets = container.getStartupTimings().getOffsets();
+                StringBuilder line = new StringBuilder(phase).append(',').append(container.getContainerName());
+                CONTAINER_PHASES.forEach(containerPhase -> {
+                    line.append(',');
+                    Long offset = offsets.get(containerPhase);
+                    if (null != offset) {
+                        line.append(offset);
+                    }
+                });
+                writer.println(line);
+            }));
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.pulsar.tests.integration.topologies;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.tests.integration.utils.ExecLatencyStats;
 import org.testng.annotations.DataProvider;
 
 import java.util.stream.Stream;
@@ -66,18 +67,23 @@ public abstract class PulsarClusterTestBase extends PulsarTestBase {
     }
 
     protected static PulsarCluster pulsarCluster;
+    protected static PulsarClusterPool.Lease clusterLease;
 
     public void setupCluster() throws Exception {
         this.setupCluster("");
     }
 
     public void setupCluster(String namePrefix) throws Exception {
-        String clusterName = Stream.of(this.getClass().getSimpleName(), namePrefix, randomName(5))
-                .filter(s -> s != null && !s.isEmpty())
-                .collect(joining("-"));
+        // snapshot clusters boot under a fixed name, which is part of their restored metadata
+        boolean snapshot = PulsarClusterSnapshot.isEnabled();
+        String clusterName = snapshot ? PulsarClusterSnapshot.CLUSTER_NAME
+                : Stream.of(this.getClass().getSimpleName(), namePrefix, randomName(5))
+                        .filter(s -> s != null && !s.isEmpty())
+                        .collect(joining("-"));
 
         PulsarClusterSpec.PulsarClusterSpecBuilder specBuilder = PulsarClusterSpec.builder()
-                .clusterName(clusterName);
+                .clusterName(clusterName)
+                .enableSnapshot(snapshot);
 
         setupCluster(beforeSetupCluster(clusterName, specBuilder).build());
     }
@@ -92,10 +98,27 @@ public abstract class PulsarClusterTestBase extends PulsarTestBase {
         // no-op
     }
 
+    /**
+     * Returns whether this suite can run on a cluster leased from the {@link PulsarClusterPool}.
+     *
+     * <p>Suites that customize the containers in {@link #beforeStartCluster()} must return false,
+     * since a pooled cluster might already be running.
+     */
+    protected boolean isClusterPoolable() {
+        return true;
+    }
+
     protected void setupCluster(PulsarClusterSpec spec) throws Exception {
         log.info("Setting up cluster {} with {} bookies, {} brokers",
                 spec.clusterName(), spec.numBookies(), spec.numBrokers());
 
+        if (PulsarClusterPool.getInstance().isEnabled() && isClusterPoolable()) {
+            clusterLease = PulsarClusterPool.getInstance().lease(spec);
+            pulsarCluster = clusterLease.getCluster();
+            log.info("Leased cluster {} for spec {}", pulsarCluster.getClusterName(), spec.clusterName());
+            return;
+        }
+
         pulsarCluster = PulsarCluster.forSpec(spec);
 
         beforeStartCluster();
@@ -106,7 +129,13 @@ public abstract class PulsarClusterTestBase extends PulsarTestBase {
     }
 
     public void tearDownCluster() {
-        if (null != pulsarCluster) {
+        // summarize the execs of this suite only
+        ExecLatencyStats.logSummary();
+        ExecLatencyStats.reset();
+        if (null != clusterLease) {
+            clusterLease.close();
+            clusterLease = null;
+        } else if (null != pulsarCluster) {
             pulsarCluster.stop();
         }
     }
@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.topologies;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.Sets;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pulsar.client.admin.PulsarAdmin;
+import org.apache.pulsar.common.policies.data.TenantInfo;
+import org.apache.pulsar.common.util.FutureUtil;
+import org.apache.pulsar.tests.integration.containers.CSContainer;
+import org.testcontainers.containers.Network;
+
+/**
+ * A set of pulsar clusters in containers, sharing one network and one configuration store.
+ *
+ * <p>Every cluster runs its own local zookeeper, bookies and brokers. Their hosts are prefixed
+ * with the cluster name, e.g. `us-west-pulsar-broker-0`, so the brokers of each cluster can
+ * reach the brokers of the others by the service urls registered in the configuration store.
+ */
+@Slf4j
+public class PulsarMultiCluster {
+
+    /**
+     * Pulsar Multi Cluster Spec
+     *
+     * @param spec pulsar multi cluster spec.
+     * @return the built pulsar multi cluster
+     */
+    public static PulsarMultiCluster forSpec(PulsarMultiClusterSpec spec) {
+        return new PulsarMultiCluster(spec);
+    }
+
+    private final PulsarMultiClusterSpec spec;
+    @Getter
+    private final Network network;
+    private final CSContainer csContainer;
+    private final Map<String, PulsarCluster> clusters;
+
+    private PulsarMultiCluster(PulsarMultiClusterSpec spec) {
+        checkArgument(!spec.clusters().isEmpty(), "No cluster in multi cluster " + spec.name());
+        this.spec = spec;
+        this.network = Network.newNetwork();
+        this.csContainer = new CSContainer(spec.name())
+            .withNetwork(network)
+            .withNetworkAliases(CSContainer.NAME);
+        this.clusters = new LinkedHashMap<>();
+        for (PulsarClusterSpec clusterSpec : spec.clusters()) {
+            String clusterName = clusterSpec.clusterName();
+            checkArgument(!clusters.containsKey(clusterName), "Duplicate cluster name " + clusterName);
+            clusters.put(clusterName, new PulsarCluster(clusterSpec, network, csContainer, clusterName + "-"));
+        }
+    }
+
+    public void start() throws Exception {
+        csContainer.start();
+        log.info("Successfully started the shared configuration store of multi cluster {}", spec.name());
+
+        // the clusters only share the configuration store, so they are started concurrently
+        ExecutorService executor = Executors.newFixedThreadPool(clusters.size(),
+                new DefaultThreadFactory("pulsar-multi-cluster-start"));
+        try {
+            List<CompletableFuture<Void>> futures = clusters.values().stream()
+                    .map(cluster -> CompletableFuture.runAsync(() -> {
+                        try {
+                            cluster.start();
+                        } catch (Exception e) {
+                            throw new RuntimeException("Failed to start cluster " + cluster.getClusterName(), e);
+                        }
+                    }, executor))
+                    .collect(Collectors.toList());
+            FutureUtil.waitForAll(futures).get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (spec.enableReplication()) {
+            setupReplication();
+        }
+        log.info("Pulsar multi cluster {} is up running with clusters {}", spec.name(), clusters.keySet());
+    }
+
+    private void setupReplication() throws Exception {
+        String namespace = spec.replicatedNamespace();
+        String tenant = namespace.substring(0, namespace.indexOf('/'));
+        Set<String> clusterNames = Sets.newHashSet(clusters.keySet());
+        // tenants and namespaces live in the shared configuration store, any cluster can create them
+        PulsarAdmin admin = getCluster(0).getAdmin().getPulsarAdmin();
+        admin.tenants().createTenant(tenant, new TenantInfo(Collections.emptySet(), clusterNames));
+        admin.namespaces().createNamespace(namespace, clusterNames);
+        log.info("Namespace {} is replicated to clusters {}", namespace, clusterNames);
+    }
+
+    public synchronized void stop() {
+        clusters.values().parallelStream().forEach(PulsarCluster::stop);
+        csContainer.stop();
+        try {
+            network.close();
+        } catch (Exception e) {
+            log.info("Failed to shutdown network for pulsar multi cluster {}", spec.name(), e);
+        }
+    }
+
+    public String getReplicatedNamespace() {
+        return spec.replicatedNamespace();
+    }
+
+    public PulsarCluster getCluster(String clusterName) {
+        PulsarCluster cluster = clusters.get(clusterName);
+        checkArgument(null != cluster, "No cluster " + clusterName + " in multi cluster " + spec.name());
+        return cluster;
+    }
+
+    public PulsarCluster getCluster(int index) {
+        checkArgument(index >= 0 && index < clusters.size(), "Index : " + index + " is out range");
+        return clusters.values().stream().skip(index).findFirst().get();
+    }
+
+    public Collection<PulsarCluster> getClusters() {
+        return clusters.values();
+    }
+}
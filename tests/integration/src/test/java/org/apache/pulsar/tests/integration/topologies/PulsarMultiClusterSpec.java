@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.topologies;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.Singular;
+import lombok.experimental.Accessors;
+
+/**
+ * Spec to build a set of pulsar clusters that replicate to each other.
+ */
+@Builder(toBuilder = true)
+@Accessors(fluent = true)
+@Getter
+@Setter
+public class PulsarMultiClusterSpec {
+
+    /**
+     * Returns the name of the multi cluster, it names the shared configuration store.
+     *
+     * @return the name of the multi cluster.
+     */
+    @Default
+    String name = "pulsar-multi";
+
+    /**
+     * Returns the specs of the clusters, the cluster names must be unique.
+     *
+     * @return the specs of the clusters.
+     */
+    @Singular
+    List<PulsarClusterSpec> clusters;
+
+    /**
+     * Returns the flag whether to set up a namespace replicated to all the clusters.
+     *
+     * @return the flag whether to enable replication.
+     */
+    @Default
+    boolean enableReplication = true;
+
+    /**
+     * Returns the namespace replicated to all the clusters, its tenant is created as well.
+     *
+     * @return the replicated namespace.
+     */
+    @Default
+    String replicatedNamespace = "geo/replicated";
+}
@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.utils;
+
+import org.testng.IConfigurationListener;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+/**
+ * Reports failed tests and configurations to the {@link ArtifactCollector}, so that containers are only collected
+ * after a failure when it runs in {@link ArtifactCollector.Mode#ON_FAILURE}.
+ */
+public class ArtifactCollectionListener implements ITestListener, IConfigurationListener {
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        ArtifactCollector.getInstance().recordFailure();
+    }
+
+    @Override
+    public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+        ArtifactCollector.getInstance().recordFailure();
+    }
+
+    @Override
+    public void onTestStart(ITestResult result) {
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+    }
+
+    @Override
+    public void onTestSkipped(ITestResult result) {
+    }
+
+    @Override
+    public void onStart(ITestContext context) {
+    }
+
+    @Override
+    public void onFinish(ITestContext context) {
+    }
+
+    @Override
+    public void onConfigurationFailure(ITestResult result) {
+        // e.g. a cluster that failed to start, whose containers are stopped right away
+        ArtifactCollector.getInstance().recordFailure();
+    }
+
+    @Override
+    public void onConfigurationSuccess(ITestResult result) {
+    }
+
+    @Override
+    public void onConfigurationSkip(ITestResult result) {
+    }
+}
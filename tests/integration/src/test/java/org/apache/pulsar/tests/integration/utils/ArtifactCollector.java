@@ -0,0 +1,227 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.core.command.LogContainerResultCallback;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collects the logs and log directories of containers into `target/container-logs/<container>`.
+ *
+ * <p>The artifacts of a container are collected concurrently with those of other containers, and
+ * each of them is streamed through gzip. The bytes read from a container are capped, an artifact
+ * that doesn't fit is truncated.
+ *
+ * <p>The system property {@link #MODE_PROPERTY} controls whether artifacts are collected at all:
+ * `always` (the default), `on_failure` to only collect them once a test has failed, as reported
+ * by {@link ArtifactCollectionListener}, or `never`.
+ */
+@Slf4j
+public class ArtifactCollector {
+
+    public static final String MODE_PROPERTY = "pulsar.artifacts.collect";
+    public static final String MAX_BYTES_PROPERTY = "pulsar.artifacts.maxBytesPerContainer";
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final long DEFAULT_MAX_BYTES_PER_CONTAINER = 256L * 1024 * 1024;
+
+    /**
+     * When artifacts are collected.
+     */
+    public enum Mode {
+        ALWAYS,
+        ON_FAILURE,
+        NEVER
+    }
+
+    private static final ArtifactCollector INSTANCE = new ArtifactCollector(
+            Mode.valueOf(System.getProperty(MODE_PROPERTY, Mode.ALWAYS.name()).toUpperCase(Locale.ROOT)),
+            Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES_PER_CONTAINER));
+
+    public static ArtifactCollector getInstance() {
+        return INSTANCE;
+    }
+
+    private final Mode mode;
+    private final long maxBytesPerContainer;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            new DefaultThreadFactory("container-artifact-collector", true));
+
+    ArtifactCollector(Mode mode, long maxBytesPerContainer) {
+        this.mode = mode;
+        this.maxBytesPerContainer = maxBytesPerContainer;
+    }
+
+    /**
+     * Record a failed test. In {@link Mode#ON_FAILURE}, artifacts of all the containers stopped
+     * afterwards are collected, since the containers of a suite usually outlive its first failure.
+     */
+    public void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    public boolean isEnabled() {
+        switch (mode) {
+            case ALWAYS:
+                return true;
+            case ON_FAILURE:
+                return failures.get() > 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Collect the log of a container and the given directories of it.
+     *
+     * @param docker the docker client.
+     * @param containerId the id of the container.
+     * @param containerName the name of the container, which names its artifact directory.
+     * @param dirs the directories of the container to archive.
+     * @return a future completed once all the artifacts are written.
+     */
+    public CompletableFuture<Void> collect(DockerClient docker, String containerId, String containerName,
+                                           Collection<String> dirs) {
+        if (!isEnabled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        File targetDir = DockerUtils.getTargetDirectory(containerName);
+        AtomicLong budget = new AtomicLong(maxBytesPerContainer);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        futures.add(CompletableFuture.runAsync(
+                () -> collectLog(docker, containerId, containerName, targetDir, budget), executor));
+        for (String dir : dirs) {
+            futures.add(CompletableFuture.runAsync(
+                    () -> collectDir(docker, containerId, containerName, dir, targetDir, budget), executor));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    private void collectLog(DockerClient docker, String containerId, String containerName,
+                                   File targetDir, AtomicLong budget) {
+        try (OutputStream os = newGzipStream(newOutputFile(targetDir, "docker", ".log.gz"))) {
+            docker.logContainerCmd(containerId).withStdOut(true).withStdErr(true).withTimestamps(true)
+                    .exec(new LogContainerResultCallback() {
+                        private boolean truncated = false;
+
+                        @Override
+                        public void onNext(Frame frame) {
+                            if (truncated) {
+                                return;
+                            }
+                            byte[] payload = frame.getPayload();
+                            int granted = acquire(budget, payload.length);
+                            try {
+                                os.write(payload, 0, granted);
+                                if (granted < payload.length) {
+                                    truncated = true;
+                                    os.write(String.format("%n[truncated at the limit of %d bytes per container]%n",
+                                            maxBytesPerContainer).getBytes(UTF_8));
+                                    close();
+                                }
+                            } catch (IOException e) {
+                                onError(e);
+                            }
+                        }
+                    }).awaitCompletion();
+        } catch (IOException | RuntimeException e) {
+            log.error("Error collecting log of container {}", containerName, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Interrupted collecting log of container {}", containerName, e);
+        }
+    }
+
+    private void collectDir(DockerClient docker, String containerId, String containerName,
+                                   String path, File targetDir, AtomicLong budget) {
+        try (InputStream dockerStream = docker.copyArchiveFromContainerCmd(containerId, path).exec();
+             OutputStream os = newGzipStream(
+                     newOutputFile(targetDir, path.replace("/", "-").replaceAll("^-", ""), ".tar.gz"))) {
+            byte[] block = new byte[BUFFER_SIZE];
+            int read = dockerStream.read(block);
+            while (read > -1) {
+                int granted = acquire(budget, read);
+                os.write(block, 0, granted);
+                if (granted < read) {
+                    log.warn("Truncated archive {} of container {} at the limit of {} bytes per container",
+                            path, containerName, maxBytesPerContainer);
+                    break;
+                }
+                read = dockerStream.read(block);
+            }
+        } catch (NotFoundException e) {
+            // the container doesn't have the directory
+            log.debug("No {} in container {}", path, containerName);
+        } catch (IOException | RuntimeException e) {
+            log.error("Error collecting {} of container {}", path, containerName, e);
+        }
+    }
+
+    /**
+     * Take up to the given number of bytes from the budget of a container.
+     */
+    private static int acquire(AtomicLong budget, int bytes) {
+        while (true) {
+            long remaining = budget.get();
+            if (remaining <= 0) {
+                return 0;
+            }
+            int granted = (int) Math.min(remaining, bytes);
+            if (budget.compareAndSet(remaining, remaining - granted)) {
+                return granted;
+            }
+        }
+    }
+
+    private static OutputStream newGzipStream(File output) throws IOException {
+        return new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(output), BUFFER_SIZE), BUFFER_SIZE);
+    }
+
+    private static File newOutputFile(File targetDir, String baseName, String extension) throws IOException {
+        File output = new File(targetDir, baseName + extension);
+        int i = 0;
+        while (!output.createNewFile()) {
+            output = new File(targetDir, baseName + "_" + i++ + extension);
+        }
+        return output;
+    }
+}
@@ -19,154 +19,109 @@
 package org.apache.pulsar.tests.integration.utils;
 
 import com.github.dockerjava.api.DockerClient;
-import com.github.dockerjava.api.async.ResultCallback;
 import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.command.InspectExecResponse;
-import com.github.dockerjava.api.exception.NotFoundException;
 import com.github.dockerjava.api.model.ContainerNetwork;
-import com.github.dockerjava.api.model.Frame;
-import com.github.dockerjava.api.model.StreamType;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import com.google.common.io.ByteStreams;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.pulsar.tests.integration.docker.ContainerExecException;
 import org.apache.pulsar.tests.integration.docker.ContainerExecResult;
 import org.apache.pulsar.tests.integration.docker.ContainerExecResultBytes;
+import org.apache.pulsar.tests.integration.docker.ContainerFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class DockerUtils {
     private static final Logger LOG = LoggerFactory.getLogger(DockerUtils.class);
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+    private static final ExecutorService TAR_WRITER_EXECUTOR =
+            Executors.newCachedThreadPool(new DefaultThreadFactory("docker-tar-writer", true));
+    private static final long EXIT_CODE_MIN_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long EXIT_CODE_MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
 
-    private static File getTargetDirectory(String containerId) {
+    static File getTargetDirectory(String containerName) {
         String base = System.getProperty("maven.buildDirectory");
         if (base == null) {
             base = "target";
         }
-        File directory = new File(base + "/container-logs/" + containerId);
+        File directory = new File(base + "/container-logs/" + containerName);
         if (!directory.exists() && !directory.mkdirs()) {
             LOG.error("Error creating directory for container logs.");
         }
         return directory;
     }
 
-    public static void dumpContainerLogToTarget(DockerClient dockerClient, String containerId) {
-        final InspectContainerResponse inspectContainerResponse = dockerClient.inspectContainerCmd(containerId).exec();
-        // docker api returns names prefixed with "/", it's part of it's legacy design,
-        // this removes it to be consistent with what docker ps shows.
-        final String containerName = inspectContainerResponse.getName().replace("/","");
-        File output = new File(getTargetDirectory(containerName), "docker.log");
-        int i = 0;
-        while (output.exists()) {
-            LOG.info("{} exists, incrementing", output);
-            output = new File(getTargetDirectory(containerName), "docker." + i++ + ".log");
-        }
-        try (FileOutputStream os = new FileOutputStream(output)) {
-            CompletableFuture<Boolean> future = new CompletableFuture<>();
-            dockerClient.logContainerCmd(containerName).withStdOut(true)
-                .withStdErr(true).withTimestamps(true).exec(new ResultCallback<Frame>() {
-                        @Override
-                        public void close() {}
-
-                        @Override
-                        public void onStart(Closeable closeable) {}
-
-                        @Override
-                        public void onNext(Frame object) {
-                            try {
-                                os.write(object.getPayload());
-                            } catch (IOException e) {
-                                onError(e);
-                            }
-                        }
-
-                        @Override
-                        public void onError(Throwable throwable) {
-                            future.completeExceptionally(throwable);
-                        }
-
-                        @Override
-                        public void onComplete() {
-                            future.complete(true);
-                        }
-                    });
-            future.get();
-        } catch (RuntimeException|ExecutionException|IOException e) {
-            LOG.error("Error dumping log for {}", containerName, e);
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
-            LOG.info("Interrupted dumping log from container {}", containerName, ie);
-        }
-    }
-
-    public static void dumpContainerDirToTargetCompressed(DockerClient dockerClient, String containerId,
-                                                          String path) {
-        final int READ_BLOCK_SIZE = 10000;
-        final InspectContainerResponse inspectContainerResponse = dockerClient.inspectContainerCmd(containerId).exec();
-        // docker api returns names prefixed with "/", it's part of it's legacy design,
-        // this removes it to be consistent with what docker ps shows.
-        final String containerName = inspectContainerResponse.getName().replace("/","");
-        final String baseName = path.replace("/", "-").replaceAll("^-", "");
-        File output = new File(getTargetDirectory(containerName), baseName + ".tar.gz");
-        int i = 0;
-        while (output.exists()) {
-            LOG.info("{} exists, incrementing", output);
-            output = new File(getTargetDirectory(containerName), baseName + "_" + i++ + ".tar.gz");
-        }
-        try (InputStream dockerStream = dockerClient.copyArchiveFromContainerCmd(containerId, path).exec();
-             OutputStream os = new GZIPOutputStream(new FileOutputStream(output))) {
-            byte[] block = new byte[READ_BLOCK_SIZE];
-            int read = dockerStream.read(block, 0, READ_BLOCK_SIZE);
-            while (read > -1) {
-                os.write(block, 0, read);
-                read = dockerStream.read(block, 0, READ_BLOCK_SIZE);
-            }
-        } catch (RuntimeException|IOException e) {
-            if (!(e instanceof NotFoundException)) {
-                LOG.error("Error reading dir from container {}", containerName, e);
-            }
-        }
-    }
-
-    public static void dumpContainerLogDirToTarget(DockerClient docker, String containerId,
-                                                   String path) {
-        final int READ_BLOCK_SIZE = 10000;
-
-        try (InputStream dockerStream = docker.copyArchiveFromContainerCmd(containerId, path).exec();
-             TarArchiveInputStream stream = new TarArchiveInputStream(dockerStream)) {
-            TarArchiveEntry entry = stream.getNextTarEntry();
-            while (entry != null) {
-                if (entry.isFile()) {
-                    File output = new File(getTargetDirectory(containerId), entry.getName().replace("/", "-"));
-                    try (FileOutputStream os = new FileOutputStream(output)) {
-                        byte[] block = new byte[READ_BLOCK_SIZE];
-                        int read = stream.read(block, 0, READ_BLOCK_SIZE);
-                        while (read > -1) {
-                            os.write(block, 0, read);
-                            read = stream.read(block, 0, READ_BLOCK_SIZE);
-                        }
+    /**
+     * Copy files into a container as a single tar archive.
+     *
+     * <p>The archive is written by a separate thread into a pipe that docker reads from, so the
+     * files are streamed from their sources and never held in memory as a whole. Missing parent
+     * directories are created by docker when the archive is extracted.
+     *
+     * @param docker the docker client.
+     * @param containerId the id of the container.
+     * @param files the files to copy.
+     */
+    public static void copyFilesToContainer(DockerClient docker, String containerId,
+                                            Collection<ContainerFile> files) throws IOException {
+        PipedInputStream tarStream = new PipedInputStream(COPY_BUFFER_SIZE);
+        PipedOutputStream tarOutput = new PipedOutputStream(tarStream);
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try (TarArchiveOutputStream tar = new TarArchiveOutputStream(tarOutput)) {
+                tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+                tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+                for (ContainerFile file : files) {
+                    // entries are relative to the root of the container
+                    TarArchiveEntry entry = new TarArchiveEntry(file.getPath().substring(1));
+                    entry.setSize(file.getSize());
+                    entry.setMode(file.getMode());
+                    tar.putArchiveEntry(entry);
+                    try (InputStream contents = file.open()) {
+                        ByteStreams.copy(contents, tar);
                     }
+                    tar.closeArchiveEntry();
                 }
-                entry = stream.getNextTarEntry();
+                tar.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-        } catch (RuntimeException|IOException e) {
-            LOG.error("Error reading logs from container {}", containerId, e);
+        }, TAR_WRITER_EXECUTOR);
+        try (InputStream ignored = tarStream) {
+            docker.copyArchiveToContainerCmd(containerId)
+                    .withTarInputStream(tarStream)
+                    .withRemotePath("/")
+                    .exec();
         }
+        try {
+            writer.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        LOG.info("Copied {} to container {}", files, containerId);
     }
 
     public static String getContainerIP(DockerClient docker, String containerId) {
@@ -181,8 +136,26 @@ public class DockerUtils {
                                                  String containerId,
                                                  String... cmd)
             throws ContainerExecException, ExecutionException, InterruptedException {
+        return runCommand(docker, containerId, ExecOptions.DEFAULT, cmd);
+    }
+
+    /**
+     * Run a command in a container and wait for it to complete.
+     *
+     * @param docker the docker client.
+     * @param containerId the id of the container.
+     * @param options how the output of the command is consumed and retained.
+     * @param cmd the command.
+     * @return the exit code of the command with its retained output.
+     * @throws ContainerExecException if the command completed with a non zero exit code.
+     */
+    public static ContainerExecResult runCommand(DockerClient docker,
+                                                 String containerId,
+                                                 ExecOptions options,
+                                                 String... cmd)
+            throws ContainerExecException, ExecutionException, InterruptedException {
         try {
-            return runCommandAsync(docker, containerId, cmd).get();
+            return runCommandAsync(docker, containerId, options, cmd).get();
         } catch (ExecutionException e) {
             if (e.getCause() instanceof ContainerExecException) {
                 throw (ContainerExecException) e.getCause();
@@ -194,152 +167,169 @@ public class DockerUtils {
     public static CompletableFuture<ContainerExecResult> runCommandAsync(DockerClient dockerClient,
                                                                          String containerId,
                                                                          String... cmd) {
-        CompletableFuture<ContainerExecResult> future = new CompletableFuture<>();
-        String execId = dockerClient.execCreateCmd(containerId)
-            .withCmd(cmd)
-            .withAttachStderr(true)
-            .withAttachStdout(true)
-            .exec()
-            .getId();
-        final InspectContainerResponse inspectContainerResponse = dockerClient.inspectContainerCmd(containerId).exec();
-        final String containerName = inspectContainerResponse.getName().replace("/","");
-        String cmdString = String.join(" ", cmd);
-        StringBuilder stdout = new StringBuilder();
-        StringBuilder stderr = new StringBuilder();
-        dockerClient.execStartCmd(execId).withDetach(false)
-            .exec(new ResultCallback<Frame>() {
-                @Override
-                public void close() {}
-
-                @Override
-                public void onStart(Closeable closeable) {
-                    LOG.info("DOCKER.exec({}:{}): Executing...", containerName, cmdString);
-                }
-
-                @Override
-                public void onNext(Frame object) {
-                    LOG.info("DOCKER.exec({}:{}): {}", containerName, cmdString, object);
-                    if (StreamType.STDOUT == object.getStreamType()) {
-                        stdout.append(new String(object.getPayload(), UTF_8));
-                    } else if (StreamType.STDERR == object.getStreamType()) {
-                        stderr.append(new String(object.getPayload(), UTF_8));
-                    }
-                }
-
-                @Override
-                public void onError(Throwable throwable) {
-                    future.completeExceptionally(throwable);
-                }
+        return runCommandAsync(dockerClient, containerId, ExecOptions.DEFAULT, cmd);
+    }
 
-                @Override
-                public void onComplete() {
-                    LOG.info("DOCKER.exec({}:{}): Done", containerName, cmdString);
+    /**
+     * Run a command in a container, streaming its output to the consumers of the given options.
+     *
+     * @param dockerClient the docker client.
+     * @param containerId the id of the container.
+     * @param options how the output of the command is consumed and retained.
+     * @param cmd the command.
+     * @return a future completed with the exit code of the command and its retained output, or
+     *         completed exceptionally with a {@link ContainerExecException} on a non zero exit code.
+     */
+    public static CompletableFuture<ContainerExecResult> runCommandAsync(DockerClient dockerClient,
+                                                                         String containerId,
+                                                                         ExecOptions options,
+                                                                         String... cmd) {
+        return runCommandAsync(dockerClient, containerId, getContainerName(dockerClient, containerId), options, cmd);
+    }
 
-                    InspectExecResponse resp = dockerClient.inspectExecCmd(execId).exec();
-                    while (resp.isRunning()) {
-                        try {
-                            Thread.sleep(200);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                            throw new RuntimeException(ie);
-                        }
-                        resp = dockerClient.inspectExecCmd(execId).exec();
-                    }
-                    int retCode = resp.getExitCode();
-                    ContainerExecResult result = ContainerExecResult.of(
-                            retCode,
-                            stdout.toString(),
-                            stderr.toString()
-                    );
-                    LOG.info("DOCKER.exec({}:{}): completed with {}", containerName, cmdString, retCode);
+    /**
+     * Run a command in a container, streaming its output to the consumers of the given options.
+     *
+     * @param dockerClient the docker client.
+     * @param containerId the id of the container.
+     * @param containerName the name of the container, only used for logging.
+     * @param options how the output of the command is consumed and retained.
+     * @param cmd the command.
+     * @return a future completed with the exit code of the command and its retained output, or
+     *         completed exceptionally with a {@link ContainerExecException} on a non zero exit code.
+     */
+    public static CompletableFuture<ContainerExecResult> runCommandAsync(DockerClient dockerClient,
+                                                                         String containerId,
+                                                                         String containerName,
+                                                                         ExecOptions options,
+                                                                         String... cmd) {
+        long startNanos = System.nanoTime();
+        String cmdString = String.join(" ", cmd);
+        ExecOutputCollector collector = new ExecOutputCollector(containerName, cmdString, options);
+        String execId = createExec(dockerClient, containerId, cmd);
+        long createdNanos = System.nanoTime();
+        dockerClient.execStartCmd(execId).withDetach(false).exec(collector);
+        return collector.completion().thenApply(ignore -> {
+            long streamCompletedNanos = System.nanoTime();
+            int retCode = getExitCode(dockerClient, execId);
+            ExecLatencyStats.record(startNanos, createdNanos, streamCompletedNanos, System.nanoTime());
+            ContainerExecResult result = ContainerExecResult.of(
+                    retCode,
+                    new String(collector.getStdout(), UTF_8),
+                    new String(collector.getStderr(), UTF_8)
+            );
+            LOG.info("DOCKER.exec({}:{}): completed with {}", containerName, cmdString, retCode);
+
+            if (retCode != 0) {
+                LOG.error("DOCKER.exec({}:{}): completed with non zero return code: {}\nstdout: {}\nstderr: {}",
+                        containerName, cmdString, result.getExitCode(), result.getStdout(), result.getStderr());
+                throw new CompletionException(new ContainerExecException(cmdString, containerId, result));
+            }
+            return result;
+        });
+    }
 
-                    if (retCode != 0) {
-                        LOG.error("DOCKER.exec({}:{}): completed with non zero return code: {}\nstdout: {}\nstderr: {}",
-                                containerName, cmdString, result.getExitCode(), result.getStdout(), result.getStderr());
-                        future.completeExceptionally(new ContainerExecException(cmdString, containerId, result));
-                    } else {
-                        future.complete(result);
-                    }
-                }
-            });
-        return future;
+    /**
+     * Run a command that follows its output until the container stops, such as a `tail -F` of a log file.
+     *
+     * <p>The command is expected to be ended by the container stopping, so its exit code is not inspected,
+     * an interrupted stream is not an error and the command is not recorded in the {@link ExecLatencyStats}.
+     *
+     * @param dockerClient the docker client.
+     * @param containerId the id of the container.
+     * @param containerName the name of the container, only used for logging.
+     * @param options how the output of the command is consumed and retained.
+     * @param cmd the command.
+     * @return a future completed once the output stream of the command ends.
+     */
+    public static CompletableFuture<Void> followCommandAsync(DockerClient dockerClient,
+                                                             String containerId,
+                                                             String containerName,
+                                                             ExecOptions options,
+                                                             String... cmd) {
+        String cmdString = String.join(" ", cmd);
+        ExecOutputCollector collector = new ExecOutputCollector(containerName, cmdString, options);
+        String execId = createExec(dockerClient, containerId, cmd);
+        dockerClient.execStartCmd(execId).withDetach(false).exec(collector);
+        return collector.completion().handle((ignore, e) -> {
+            if (null != e) {
+                LOG.debug("DOCKER.exec({}:{}): stream ended with {}", containerName, cmdString, e.toString());
+            }
+            return null;
+        });
     }
 
     public static ContainerExecResultBytes runCommandWithRawOutput(DockerClient dockerClient,
                                                                    String containerId,
                                                                    String... cmd) throws ContainerExecException {
-        CompletableFuture<Boolean> future = new CompletableFuture<>();
-        String execId = dockerClient.execCreateCmd(containerId)
+        String cmdString = String.join(" ", cmd);
+        String containerName = getContainerName(dockerClient, containerId);
+        // the output is binary, it is neither split into lines nor logged
+        ExecOutputCollector collector = new ExecOutputCollector(containerName, cmdString,
+                ExecOptions.builder().maxLoggedLinesPerSecond(0).build());
+        long startNanos = System.nanoTime();
+        String execId = createExec(dockerClient, containerId, cmd);
+        long createdNanos = System.nanoTime();
+        dockerClient.execStartCmd(execId).withDetach(false).exec(collector);
+        collector.completion().join();
+
+        long streamCompletedNanos = System.nanoTime();
+        int retCode = getExitCode(dockerClient, execId);
+        ExecLatencyStats.record(startNanos, createdNanos, streamCompletedNanos, System.nanoTime());
+        ContainerExecResultBytes result = ContainerExecResultBytes.of(
+                retCode,
+                collector.getStdout(),
+                collector.getStderr());
+        LOG.info("DOCKER.exec({}:{}): completed with {}", containerName, cmdString, retCode);
+
+        if (retCode != 0) {
+            throw new ContainerExecException(cmdString, containerId, null);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the name of a container as shown by `docker ps`.
+     *
+     * @param dockerClient the docker client.
+     * @param containerId the id of the container.
+     * @return the name of the container.
+     */
+    public static String getContainerName(DockerClient dockerClient, String containerId) {
+        final InspectContainerResponse inspectContainerResponse = dockerClient.inspectContainerCmd(containerId).exec();
+        // docker api returns names prefixed with "/", it's part of it's legacy design,
+        // this removes it to be consistent with what docker ps shows.
+        return inspectContainerResponse.getName().replace("/", "");
+    }
+
+    private static String createExec(DockerClient dockerClient, String containerId, String... cmd) {
+        return dockerClient.execCreateCmd(containerId)
                 .withCmd(cmd)
                 .withAttachStderr(true)
                 .withAttachStdout(true)
                 .exec()
                 .getId();
-        final InspectContainerResponse inspectContainerResponse = dockerClient.inspectContainerCmd(containerId).exec();
-        final String containerName = inspectContainerResponse.getName().replace("/","");
-        String cmdString = String.join(" ", cmd);
-        ByteBuf stdout = Unpooled.buffer();
-        ByteBuf stderr = Unpooled.buffer();
-        dockerClient.execStartCmd(execId).withDetach(false)
-                .exec(new ResultCallback<Frame>() {
-                    @Override
-                    public void close() {
-                    }
-
-                    @Override
-                    public void onStart(Closeable closeable) {
-                        LOG.info("DOCKER.exec({}:{}): Executing...", containerName, cmdString);
-                    }
-
-                    @Override
-                    public void onNext(Frame object) {
-                        if (StreamType.STDOUT == object.getStreamType()) {
-                            stdout.writeBytes(object.getPayload());
-                        } else if (StreamType.STDERR == object.getStreamType()) {
-                            stderr.writeBytes(object.getPayload());
-                        }
-                    }
-
-                    @Override
-                    public void onError(Throwable throwable) {
-                        future.completeExceptionally(throwable);
-                    }
-
-                    @Override
-                    public void onComplete() {
-                        LOG.info("DOCKER.exec({}:{}): Done", containerName, cmdString);
-                        future.complete(true);
-                    }
-                });
-        future.join();
+    }
 
+    /**
+     * Returns the exit code of an exec whose output stream is complete.
+     *
+     * <p>The process of the exec has usually exited by the time its stream completes, so the exec is
+     * inspected right away and then with a backoff from 100us, instead of sleeping before each inspection.
+     */
+    private static int getExitCode(DockerClient dockerClient, String execId) {
+        long backoffNanos = EXIT_CODE_MIN_BACKOFF_NANOS;
         InspectExecResponse resp = dockerClient.inspectExecCmd(execId).exec();
         while (resp.isRunning()) {
-            try {
-                Thread.sleep(200);
-            } catch (InterruptedException ie) {
+            LockSupport.parkNanos(backoffNanos);
+            if (Thread.interrupted()) {
                 Thread.currentThread().interrupt();
-                throw new RuntimeException(ie);
+                throw new RuntimeException(new InterruptedException());
             }
+            backoffNanos = Math.min(backoffNanos * 2, EXIT_CODE_MAX_BACKOFF_NANOS);
             resp = dockerClient.inspectExecCmd(execId).exec();
         }
-        int retCode = resp.getExitCode();
-
-        byte[] stdoutBytes = new byte[stdout.readableBytes()];
-        stdout.readBytes(stdoutBytes);
-        byte[] stderrBytes = new byte[stderr.readableBytes()];
-        stderr.readBytes(stderrBytes);
-
-        ContainerExecResultBytes result = ContainerExecResultBytes.of(
-                retCode,
-                stdoutBytes,
-                stderrBytes);
-        LOG.info("DOCKER.exec({}:{}): completed with {}", containerName, cmdString, retCode);
-
-        if (retCode != 0) {
-            throw new ContainerExecException(cmdString, containerId, null);
-        }
-        return result;
+        return resp.getExitCode();
     }
 
     public static Optional<String> getContainerCluster(DockerClient docker, String containerId) {
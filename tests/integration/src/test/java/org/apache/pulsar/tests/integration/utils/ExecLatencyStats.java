@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.utils;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency histograms of the commands executed through {@link DockerUtils}, in microseconds.
+ *
+ * <p>The phases split an exec into what docker and the command itself take, so the overhead the
+ * harness adds on top of the command can be told apart from the command.
+ */
+@Slf4j
+public class ExecLatencyStats {
+
+    /**
+     * The phases of an exec.
+     */
+    public enum Phase {
+        /** Creating the exec. */
+        CREATE,
+        /** Starting the exec until its output stream is complete, mostly the command itself. */
+        STREAM,
+        /** Retrieving the exit code once the output stream is complete. */
+        EXIT_CODE,
+        /** The whole exec, from its creation until its exit code is known. */
+        TOTAL
+    }
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final Map<Phase, Histogram> HISTOGRAMS = new EnumMap<>(Phase.class);
+
+    static {
+        for (Phase phase : Phase.values()) {
+            HISTOGRAMS.put(phase, new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+        }
+    }
+
+    private ExecLatencyStats() {}
+
+    static void record(long startNanos, long createdNanos, long streamCompletedNanos, long exitCodeNanos) {
+        recordNanos(Phase.CREATE, createdNanos - startNanos);
+        recordNanos(Phase.STREAM, streamCompletedNanos - createdNanos);
+        recordNanos(Phase.EXIT_CODE, exitCodeNanos - streamCompletedNanos);
+        recordNanos(Phase.TOTAL, exitCodeNanos - startNanos);
+    }
+
+    private static void recordNanos(Phase phase, long nanos) {
+        long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0)), HIGHEST_TRACKABLE_MICROS);
+        HISTOGRAMS.get(phase).recordValue(micros);
+    }
+
+    /**
+     * Returns a copy of the latency histogram of a phase, in microseconds.
+     *
+     * @param phase the phase of the execs.
+     * @return the latencies recorded since the last reset.
+     */
+    public static Histogram getHistogram(Phase phase) {
+        return HISTOGRAMS.get(phase).copy();
+    }
+
+    public static void reset() {
+        HISTOGRAMS.values().forEach(Histogram::reset);
+    }
+
+    /**
+     * Log count, p50, p99 and max of each phase, over the execs recorded since the last reset.
+     */
+    public static void logSummary() {
+        if (HISTOGRAMS.get(Phase.TOTAL).getTotalCount() == 0) {
+            return;
+        }
+        for (Phase phase : Phase.values()) {
+            Histogram histogram = HISTOGRAMS.get(phase);
+            log.info("DOCKER.exec {} latency (us): count={} p50={} p99={} max={}", phase,
+                    histogram.getTotalCount(), histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(99), histogram.getMaxValue());
+        }
+    }
+}
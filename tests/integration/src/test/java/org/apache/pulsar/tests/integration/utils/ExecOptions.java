@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.utils;
+
+import com.github.dockerjava.api.model.StreamType;
+import java.util.function.BiConsumer;
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * Options of how the output of a command executed in a container is consumed.
+ *
+ * <p>The consumers are called on the thread reading the exec stream. A slow consumer stops the
+ * stream from being read, which eventually blocks the command on writing its output, so long
+ * running commands can be consumed incrementally without buffering their output in the test jvm.
+ */
+@Builder(toBuilder = true)
+@Accessors(fluent = true)
+@Getter
+public class ExecOptions {
+
+    /**
+     * The options of {@link DockerUtils#runCommand(com.github.dockerjava.api.DockerClient, String, String...)}:
+     * the whole output is retained and its lines are logged at a limited rate.
+     */
+    public static final ExecOptions DEFAULT = ExecOptions.builder().build();
+
+    /**
+     * Returns the consumer of each line of stdout and stderr, without its line terminator.
+     *
+     * @return the line consumer, null to not consume lines.
+     */
+    BiConsumer<StreamType, String> lineConsumer;
+
+    /**
+     * Returns the consumer of each chunk of stdout and stderr, as read from the exec stream.
+     *
+     * @return the chunk consumer, null to not consume chunks.
+     */
+    BiConsumer<StreamType, byte[]> chunkConsumer;
+
+    /**
+     * Returns how many bytes of stdout and of stderr are retained for the result of the command.
+     * Only the last bytes of a stream are retained when it outgrows the limit.
+     *
+     * @return the retained bytes per stream, negative to retain everything.
+     */
+    @Default
+    int maxRetainedBytes = -1;
+
+    /**
+     * Returns how many lines of output are logged per second, the lines over the limit are only counted.
+     *
+     * @return the logged lines per second, 0 to not log the output.
+     */
+    @Default
+    int maxLoggedLinesPerSecond = 50;
+
+    /**
+     * Returns the length after which a line without terminator is split.
+     *
+     * @return the maximum line length in bytes.
+     */
+    @Default
+    int maxLineLength = 64 * 1024;
+}
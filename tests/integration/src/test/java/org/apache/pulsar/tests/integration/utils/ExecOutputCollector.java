@@ -0,0 +1,266 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pulsar.tests.integration.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.StreamType;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consumes the output frames of an exec according to its {@link ExecOptions}.
+ */
+class ExecOutputCollector implements ResultCallback<Frame> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExecOutputCollector.class);
+
+    private final String containerName;
+    private final String cmdString;
+    private final ExecOptions options;
+    private final boolean splitLines;
+    private final StreamOutput stdout;
+    private final StreamOutput stderr;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private long logWindowStartNanos;
+    private int logWindowLines;
+    private long suppressedLogLines;
+
+    ExecOutputCollector(String containerName, String cmdString, ExecOptions options) {
+        this.containerName = containerName;
+        this.cmdString = cmdString;
+        this.options = options;
+        this.splitLines = null != options.lineConsumer() || options.maxLoggedLinesPerSecond() > 0;
+        this.stdout = new StreamOutput(StreamType.STDOUT, options.maxRetainedBytes());
+        this.stderr = new StreamOutput(StreamType.STDERR, options.maxRetainedBytes());
+    }
+
+    /**
+     * Returns a future completed once the exec stream is fully consumed.
+     */
+    CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    byte[] getStdout() {
+        return stdout.retained.toByteArray();
+    }
+
+    byte[] getStderr() {
+        return stderr.retained.toByteArray();
+    }
+
+    @Override
+    public void onStart(Closeable closeable) {
+        LOG.info("DOCKER.exec({}:{}): Executing...", containerName, cmdString);
+    }
+
+    @Override
+    public void onNext(Frame frame) {
+        if (completion.isDone()) {
+            return;
+        }
+        StreamOutput output;
+        if (StreamType.STDOUT == frame.getStreamType()) {
+            output = stdout;
+        } else if (StreamType.STDERR == frame.getStreamType()) {
+            output = stderr;
+        } else {
+            return;
+        }
+        byte[] payload = frame.getPayload();
+        try {
+            output.retained.write(payload);
+            if (null != options.chunkConsumer()) {
+                options.chunkConsumer().accept(output.type, payload);
+            }
+            if (splitLines) {
+                output.split(payload);
+            }
+        } catch (RuntimeException e) {
+            onError(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        completion.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            if (splitLines) {
+                stdout.flushLine();
+                stderr.flushLine();
+            }
+        } catch (RuntimeException e) {
+            onError(e);
+            return;
+        }
+        if (suppressedLogLines > 0) {
+            LOG.info("DOCKER.exec({}:{}): {} lines of output were not logged",
+                    containerName, cmdString, suppressedLogLines);
+        }
+        for (StreamOutput output : new StreamOutput[] { stdout, stderr }) {
+            if (output.retained.getDroppedBytes() > 0) {
+                LOG.info("DOCKER.exec({}:{}): only the last {} bytes of {} were retained, {} bytes were dropped",
+                        containerName, cmdString, options.maxRetainedBytes(), output.type,
+                        output.retained.getDroppedBytes());
+            }
+        }
+        LOG.info("DOCKER.exec({}:{}): Done", containerName, cmdString);
+        completion.complete(null);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void onLine(StreamType type, String line) {
+        if (null != options.lineConsumer()) {
+            options.lineConsumer().accept(type, line);
+        }
+        if (options.maxLoggedLinesPerSecond() <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - logWindowStartNanos >= TimeUnit.SECONDS.toNanos(1)) {
+            logWindowStartNanos = now;
+            logWindowLines = 0;
+        }
+        if (logWindowLines < options.maxLoggedLinesPerSecond()) {
+            logWindowLines++;
+            LOG.info("DOCKER.exec({}:{}): {}: {}", containerName, cmdString, type, line);
+        } else {
+            suppressedLogLines++;
+        }
+    }
+
+    private class StreamOutput {
+
+        private final StreamType type;
+        private final RetainedBytes retained;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        StreamOutput(StreamType type, int maxRetainedBytes) {
+            this.type = type;
+            this.retained = new RetainedBytes(maxRetainedBytes);
+        }
+
+        void split(byte[] payload) {
+            int start = 0;
+            for (int i = 0; i < payload.length; i++) {
+                if (payload[i] == '\n') {
+                    line.write(payload, start, i - start);
+                    flushLine();
+                    start = i + 1;
+                } else if (line.size() + i - start >= options.maxLineLength()) {
+                    line.write(payload, start, i - start);
+                    flushLine();
+                    start = i;
+                }
+            }
+            line.write(payload, start, payload.length - start);
+        }
+
+        void flushLine() {
+            if (line.size() == 0) {
+                return;
+            }
+            String text = new String(line.toByteArray(), UTF_8);
+            line.reset();
+            if (text.endsWith("\r")) {
+                text = text.substring(0, text.length() - 1);
+            }
+            onLine(type, text);
+        }
+    }
+
+    /**
+     * The retained bytes of a stream, a ring buffer holding the last bytes of the stream when it is bounded.
+     */
+    static class RetainedBytes {
+
+        private final int capacity;
+        private final ByteArrayOutputStream unbounded;
+        private final byte[] ring;
+        private int start;
+        private int size;
+        private long droppedBytes;
+
+        RetainedBytes(int capacity) {
+            this.capacity = capacity;
+            this.unbounded = capacity < 0 ? new ByteArrayOutputStream() : null;
+            this.ring = capacity < 0 ? null : new byte[capacity];
+        }
+
+        void write(byte[] bytes) {
+            if (null != unbounded) {
+                unbounded.write(bytes, 0, bytes.length);
+                return;
+            }
+            int length = bytes.length;
+            int offset = 0;
+            if (length >= capacity) {
+                // only the tail of the chunk fits
+                droppedBytes += size + length - capacity;
+                offset = length - capacity;
+                length = capacity;
+                start = 0;
+                size = 0;
+            } else if (size + length > capacity) {
+                int overflow = size + length - capacity;
+                droppedBytes += overflow;
+                start = (start + overflow) % capacity;
+                size -= overflow;
+            }
+            if (length == 0) {
+                return;
+            }
+            int end = (start + size) % capacity;
+            int firstPart = Math.min(length, capacity - end);
+            System.arraycopy(bytes, offset, ring, end, firstPart);
+            System.arraycopy(bytes, offset + firstPart, ring, 0, length - firstPart);
+            size += length;
+        }
+
+        byte[] toByteArray() {
+            if (null != unbounded) {
+                return unbounded.toByteArray();
+            }
+            byte[] bytes = new byte[size];
+            int firstPart = Math.min(size, capacity - start);
+            System.arraycopy(ring, start, bytes, 0, firstPart);
+            System.arraycopy(ring, 0, bytes, firstPart, size - firstPart);
+            return bytes;
+        }
+
+        long getDroppedBytes() {
+            return droppedBytes;
+        }
+    }
+}